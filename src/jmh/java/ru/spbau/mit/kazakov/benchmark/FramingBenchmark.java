@@ -0,0 +1,73 @@
+package ru.spbau.mit.kazakov.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.utils.BufferPool;
+import ru.spbau.mit.kazakov.utils.ChannelReader;
+import ru.spbau.mit.kazakov.utils.ChannelWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Framing of nonblocking servers: reading a length-prefixed request and writing a response with its header,
+ * both over an in-memory channel so that no socket is involved. Payload is a raw encoded array.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private final BufferPool pool = new BufferPool();
+    private ByteBuffer payload;
+    private InMemoryChannel request;
+    private InMemoryChannel response;
+    private ChannelReader reader;
+    private ChannelWriter writer;
+    private long sequenceNumber = 0;
+
+    @Setup
+    public void setUp() {
+        payload = WireFormat.RAW.getCodec().encode(new Random(size).ints(size).toArray());
+
+        request = new InMemoryChannel(Integer.BYTES + payload.remaining());
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES).putInt(0, payload.remaining());
+        request.write(new ByteBuffer[]{length, payload.duplicate()});
+
+        response = new InMemoryChannel(ResponseHeader.size(Handshake.CURRENT_VERSION) + payload.remaining());
+        reader = new ChannelReader(pool);
+        writer = new ChannelWriter(pool);
+    }
+
+    @Benchmark
+    public int readRequest() throws IOException {
+        request.rewind();
+        while (!reader.isDone()) {
+            reader.read(request);
+        }
+
+        ByteBuffer data = reader.getData();
+        int read = data.remaining();
+        pool.release(data);
+        reader.clear();
+        return read;
+    }
+
+    @Benchmark
+    public int writeResponse() throws IOException {
+        response.clear();
+        writer.addResponse(sequenceNumber++, new StageTimings(), payload.duplicate());
+        writer.write(response);
+        return response.size();
+    }
+}
@@ -0,0 +1,83 @@
+package ru.spbau.mit.kazakov.benchmark;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Channel over a fixed heap buffer. Written bytes are appended to the buffer and can be read back
+ * any number of times, reading past written bytes reports end of stream.
+ */
+class InMemoryChannel implements ByteChannel, GatheringByteChannel {
+    private final ByteBuffer buffer;
+    private int readPosition = 0;
+
+    InMemoryChannel(int capacity) {
+        buffer = ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Discards written bytes.
+     */
+    void clear() {
+        buffer.clear();
+        readPosition = 0;
+    }
+
+    /**
+     * Makes written bytes available for reading from the beginning.
+     */
+    void rewind() {
+        readPosition = 0;
+    }
+
+    int size() {
+        return buffer.position();
+    }
+
+    @Override
+    public int read(@NotNull ByteBuffer dst) {
+        int available = buffer.position() - readPosition;
+        if (available == 0) {
+            return -1;
+        }
+
+        int read = Math.min(available, dst.remaining());
+        dst.put(buffer.slice(readPosition, read));
+        readPosition += read;
+        return read;
+    }
+
+    @Override
+    public int write(@NotNull ByteBuffer src) {
+        int written = src.remaining();
+        buffer.put(src);
+        return written;
+    }
+
+    @Override
+    public long write(@NotNull ByteBuffer[] srcs, int offset, int length) {
+        long written = 0;
+        for (int i = offset; i < offset + length; i++) {
+            written += write(srcs[i]);
+        }
+        return written;
+    }
+
+    @Override
+    public long write(@NotNull ByteBuffer[] srcs) {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        //nothing to do
+    }
+}
@@ -0,0 +1,54 @@
+package ru.spbau.mit.kazakov.benchmark;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
+import ru.spbau.mit.kazakov.utils.ArrayUtils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions between int[] and protobuf message done by servers and clients for every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private int[] array;
+    private ArrayOuterClass.Array protoArray;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() {
+        array = new Random(size).ints(size).toArray();
+        protoArray = ArrayUtils.toProtoArray(array);
+        serialized = protoArray.toByteArray();
+    }
+
+    @Benchmark
+    public ArrayOuterClass.Array toProtoArray() {
+        return ArrayUtils.toProtoArray(array);
+    }
+
+    @Benchmark
+    public int[] toIntArray() {
+        return ArrayUtils.toIntArray(protoArray);
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+        return protoArray.toByteArray();
+    }
+
+    @Benchmark
+    public ArrayOuterClass.Array parseFrom() throws InvalidProtocolBufferException {
+        return ArrayOuterClass.Array.parseFrom(serialized);
+    }
+}
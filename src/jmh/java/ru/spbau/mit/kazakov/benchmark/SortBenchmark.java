@@ -0,0 +1,47 @@
+package ru.spbau.mit.kazakov.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
+import ru.spbau.mit.kazakov.sort.SortEngine;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sort engines on random arrays. Every invocation sorts a fresh copy of the same array,
+ * {@link #copy} measures the copying alone so it can be subtracted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+    @Param
+    private SortAlgorithm algorithm;
+
+    @Param({"100", "1000", "10000"})
+    private int size;
+
+    private int[] array;
+    private SortEngine engine;
+
+    @Setup
+    public void setUp() {
+        array = new Random(size).ints(size).toArray();
+        engine = algorithm.getEngine();
+    }
+
+    @Benchmark
+    public int[] sort() {
+        int[] copy = array.clone();
+        engine.sort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public int[] copy() {
+        return array.clone();
+    }
+}
@@ -0,0 +1,345 @@
+package ru.spbau.mit.kazakov;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.performance.Distribution;
+import ru.spbau.mit.kazakov.performance.LoadGenerator;
+import ru.spbau.mit.kazakov.performance.Parameter;
+import ru.spbau.mit.kazakov.performance.PerformanceTestResult;
+import ru.spbau.mit.kazakov.performance.PerformanceTester;
+import ru.spbau.mit.kazakov.performance.ResultWriter;
+import ru.spbau.mit.kazakov.performance.ServerArchitecture;
+import ru.spbau.mit.kazakov.performance.ServerTargets;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.server.OverloadPolicy;
+import ru.spbau.mit.kazakov.server.ServerConfig;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static ru.spbau.mit.kazakov.utils.CommandLineUtils.names;
+import static ru.spbau.mit.kazakov.utils.CommandLineUtils.toConstant;
+import static ru.spbau.mit.kazakov.utils.CommandLineUtils.toInt;
+
+/**
+ * Headless alternative to {@link GUI}. Runs every requested sweep against every requested architecture
+ * and writes results to output/architecture/parameter, plus summary.csv covering the whole matrix.
+ */
+public class BenchmarkRunner {
+    private static final String USAGE = "Usage: BenchmarkRunner --output <directory> --sweep <parameter>:<step>:<max>"
+            + " [--sweep ...]\n"
+            + "    [--architectures <architecture>,...|all] [--host <host>|--targets <properties file>]\n"
+            + "    [--array-size <n>] [--clients <n>] [--delay <ms>]\n"
+            + "    [--queries <n>] [--pipeline-depth <n>] [--sort-algorithm <algorithm>] [--wire-format <format>]\n"
+            + "    [--worker-threads <n>] [--io-threads <n>] [--arrival-rate <requests per second>]\n"
+            + "    [--warmup-queries <n>] [--warmup-duration <ms>] [--trials <n>]\n"
+            + "    [--queue-capacity <n>] [--overload-policy <policy>] [--cache-capacity <bytes>]\n"
+            + "    [--load-generator <generator>] [--distribution <distribution>] [--corpus-directory <directory>]\n"
+            + "    [--corpus-seed <n>] [--corpus-arrays <n>]\n"
+            + "Positive arrival rate switches clients to open-loop mode, ARRIVAL_RATE sweep requires it\n"
+            + "WORKER_THREADS and IO_THREADS sweeps start the server in-process on localhost,"
+            + " queue and cache options apply to such servers only\n"
+            + "Input arrays are generated once per corpus seed and kept in corpus directory, default is "
+            + PerformanceTester.DEFAULT_CORPUS_DIRECTORY + "\n"
+            + "Parameters: " + names(Parameter.values()) + "\n"
+            + "Architectures: " + names(ServerArchitecture.values()) + "\n"
+            + "Sort algorithms: " + names(SortAlgorithm.values()) + "\n"
+            + "Wire formats: " + names(WireFormat.values()) + "\n"
+            + "Overload policies: " + names(OverloadPolicy.values()) + "\n"
+            + "Load generators: " + names(LoadGenerator.values()) + "\n"
+            + "Distributions: " + names(Distribution.values());
+
+    private final List<ServerArchitecture> architectures = new ArrayList<>(Arrays.asList(ServerArchitecture.values()));
+    private final List<Sweep> sweeps = new ArrayList<>();
+    private File output;
+    private ServerTargets targets = new ServerTargets();
+    private File targetsFile;
+    private int arraySize = 1000;
+    private int clientsNumber = 10;
+    private int queriesDelay = 0;
+    private int queriesNumber = 10;
+    private int pipelineDepth = 1;
+    private int arrivalRate = 0;
+    private int warmupQueries = 0;
+    private int warmupDuration = 0;
+    private int trials = 1;
+    private int workerThreads = ServerConfig.DEFAULT_WORKER_THREADS;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = ServerConfig.UNBOUNDED;
+    private OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+    private int cacheCapacity = 0;
+    private LoadGenerator loadGenerator = LoadGenerator.THREADS;
+    private Distribution distribution = Distribution.UNIFORM;
+    private Path corpusDirectory = PerformanceTester.DEFAULT_CORPUS_DIRECTORY;
+    private int corpusSeed = 0;
+    private int corpusArrays = PerformanceTester.DEFAULT_CORPUS_ARRAYS;
+    private SortAlgorithm sortAlgorithm = SortAlgorithm.BUBBLE;
+    private WireFormat wireFormat = WireFormat.PROTOBUF;
+
+    public static void main(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            runner.loadTargets();
+            System.exit(runner.run() ? 0 : 1);
+        } catch (IOException exception) {
+            System.err.println("I/O error: " + exception.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs all sweeps for all architectures. Failed runs are reported and skipped.
+     *
+     * @return true if every run succeeded
+     */
+    private boolean run() throws IOException {
+        boolean succeeded = true;
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IOException("Unable to create " + output);
+        }
+
+        try (FileWriter summary = new FileWriter(new File(output, "summary.csv"))) {
+            summary.write(ResultWriter.csvHeader("architecture,parameter,") + "\n");
+            for (ServerArchitecture architecture : architectures) {
+                for (Sweep sweep : sweeps) {
+                    System.out.println("Running " + architecture + " " + sweep.parameter.name()
+                            + " up to " + sweep.maxValue);
+
+                    PerformanceTester tester = new PerformanceTester(queriesNumber, queriesDelay, clientsNumber,
+                            arraySize);
+                    tester.setSortAlgorithm(sortAlgorithm);
+                    tester.setWireFormat(wireFormat);
+                    tester.setPipelineDepth(pipelineDepth);
+                    tester.setArrivalRate(arrivalRate);
+                    tester.setWarmupQueries(warmupQueries);
+                    tester.setWarmupDuration(warmupDuration);
+                    tester.setTrials(trials);
+                    tester.setWorkerThreads(workerThreads);
+                    tester.setIoThreads(ioThreads);
+                    tester.setQueueCapacity(queueCapacity);
+                    tester.setOverloadPolicy(overloadPolicy);
+                    tester.setCacheCapacity(cacheCapacity);
+                    tester.setLoadGenerator(loadGenerator);
+                    tester.setDistribution(distribution);
+                    tester.setCorpusDirectory(corpusDirectory);
+                    tester.setCorpusSeed(corpusSeed);
+                    tester.setCorpusArrays(corpusArrays);
+                    tester.setTargets(targets);
+
+                    PerformanceTestResult result;
+                    try {
+                        result = tester.test(sweep.parameter, architecture, sweep.step, sweep.maxValue);
+                    } catch (ConnectionException exception) {
+                        System.err.println("Connection error: " + architecture + " " + sweep.parameter.name());
+                        succeeded = false;
+                        continue;
+                    }
+
+                    File directory = new File(new File(output, architecture.name().toLowerCase(Locale.ROOT)),
+                            directoryName(sweep.parameter));
+                    ResultWriter.write(result, directory);
+                    ResultWriter.writeCsvRows(result, architecture.name() + "," + sweep.parameter.name() + ",",
+                            summary);
+                    summary.flush();
+                }
+            }
+        }
+
+        return succeeded;
+    }
+
+    private void loadTargets() throws IOException {
+        if (targetsFile != null) {
+            targets = ServerTargets.load(targetsFile);
+        }
+    }
+
+    private void parse(@NotNull String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+
+            switch (option) {
+                case "--output":
+                    output = new File(value);
+                    break;
+                case "--sweep":
+                    sweeps.add(Sweep.parse(value));
+                    break;
+                case "--architectures":
+                    architectures.clear();
+                    if (value.equalsIgnoreCase("all")) {
+                        architectures.addAll(Arrays.asList(ServerArchitecture.values()));
+                    } else {
+                        for (String architecture : value.split(",")) {
+                            architectures.add(toConstant(ServerArchitecture.class, architecture));
+                        }
+                    }
+                    break;
+                case "--host":
+                    targets = ServerTargets.ofHost(value);
+                    targetsFile = null;
+                    break;
+                case "--targets":
+                    targetsFile = new File(value);
+                    break;
+                case "--array-size":
+                    arraySize = toInt(option, value, 1);
+                    break;
+                case "--clients":
+                    clientsNumber = toInt(option, value, 1);
+                    break;
+                case "--delay":
+                    queriesDelay = toInt(option, value, 0);
+                    break;
+                case "--queries":
+                    queriesNumber = toInt(option, value, 1);
+                    break;
+                case "--pipeline-depth":
+                    pipelineDepth = toInt(option, value, 1);
+                    break;
+                case "--arrival-rate":
+                    arrivalRate = toInt(option, value, 0);
+                    break;
+                case "--warmup-queries":
+                    warmupQueries = toInt(option, value, 0);
+                    break;
+                case "--warmup-duration":
+                    warmupDuration = toInt(option, value, 0);
+                    break;
+                case "--trials":
+                    trials = toInt(option, value, 1);
+                    break;
+                case "--worker-threads":
+                    workerThreads = toInt(option, value, 1);
+                    break;
+                case "--io-threads":
+                    ioThreads = toInt(option, value, 1);
+                    break;
+                case "--queue-capacity":
+                    queueCapacity = toInt(option, value, 0);
+                    break;
+                case "--overload-policy":
+                    overloadPolicy = toConstant(OverloadPolicy.class, value);
+                    break;
+                case "--cache-capacity":
+                    cacheCapacity = toInt(option, value, 0);
+                    break;
+                case "--load-generator":
+                    loadGenerator = toConstant(LoadGenerator.class, value);
+                    break;
+                case "--distribution":
+                    distribution = toConstant(Distribution.class, value);
+                    break;
+                case "--corpus-directory":
+                    corpusDirectory = Paths.get(value);
+                    break;
+                case "--corpus-seed":
+                    corpusSeed = toInt(option, value, 0);
+                    break;
+                case "--corpus-arrays":
+                    corpusArrays = toInt(option, value, 1);
+                    break;
+                case "--sort-algorithm":
+                    sortAlgorithm = toConstant(SortAlgorithm.class, value);
+                    break;
+                case "--wire-format":
+                    wireFormat = toConstant(WireFormat.class, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        if (output == null) {
+            throw new IllegalArgumentException("Output directory isn't specified");
+        }
+        if (sweeps.isEmpty()) {
+            throw new IllegalArgumentException("No sweeps specified");
+        }
+        for (Sweep sweep : sweeps) {
+            if (sweep.parameter == Parameter.ARRIVAL_RATE && arrivalRate == 0) {
+                throw new IllegalArgumentException("Initial arrival rate must be specified for ARRIVAL_RATE sweep");
+            }
+            if (sweep.maxValue < initValue(sweep.parameter)) {
+                throw new IllegalArgumentException("Initial value of " + sweep.parameter.name()
+                        + " should be less than max value");
+            }
+        }
+    }
+
+    private int initValue(@NotNull Parameter parameter) {
+        switch (parameter) {
+            case CLIENTS_NUMBER:
+                return clientsNumber;
+            case QUERIES_DELAY:
+                return queriesDelay;
+            case ARRIVAL_RATE:
+                return arrivalRate;
+            case WORKER_THREADS:
+                return workerThreads;
+            case IO_THREADS:
+                return ioThreads;
+            default:
+                return arraySize;
+        }
+    }
+
+    /**
+     * Returns name of results directory for parameter, matching layout of results folder.
+     */
+    @NotNull
+    private static String directoryName(@NotNull Parameter parameter) {
+        switch (parameter) {
+            case CLIENTS_NUMBER:
+                return "clients";
+            case QUERIES_DELAY:
+                return "query_delay";
+            default:
+                return parameter.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Parameter varied from its initial value up to max value.
+     */
+    private static class Sweep {
+        private final Parameter parameter;
+        private final int step;
+        private final int maxValue;
+
+        private Sweep(@NotNull Parameter parameter, int step, int maxValue) {
+            this.parameter = parameter;
+            this.step = step;
+            this.maxValue = maxValue;
+        }
+
+        @NotNull
+        private static Sweep parse(@NotNull String value) {
+            String[] parts = value.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Sweep must look like <parameter>:<step>:<max>: " + value);
+            }
+            return new Sweep(toConstant(Parameter.class, parts[0]), toInt("--sweep step", parts[1], 1),
+                    toInt("--sweep max", parts[2], 0));
+        }
+    }
+}
@@ -2,44 +2,254 @@ package ru.spbau.mit.kazakov;
 
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
-import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
-import ru.spbau.mit.kazakov.utils.ArrayUtils;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongSupplier;
 
-public class Client {
+public class Client implements Closeable {
+    private final Socket socket;
     private final DataInputStream in;
     private final DataOutputStream out;
+    private final ArrayCodec codec;
+    private final int version = Handshake.CURRENT_VERSION;
+    private final int pipelineDepth;
+    private final Semaphore inFlight;
+    private final Queue<PendingRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+    private Thread responseReader = null;
+    /**
+     * Why response reader has stopped, requests submitted afterwards fail with it.
+     */
+    private volatile Exception readerFailure = null;
     @Getter
-    private long sortTime = 0;
+    private volatile long sortTime = 0;
     @Getter
-    private long clientProcessingTime = 0;
+    private volatile long clientProcessingTime = 0;
+    @Getter
+    private volatile long sentBytes = 0;
+    @Getter
+    private volatile long receivedBytes = 0;
 
     public Client(@NotNull String host, int port) throws IOException {
-        Socket socket = new Socket(host, port);
-        in = new DataInputStream(socket.getInputStream());
-        out = new DataOutputStream(socket.getOutputStream());
+        this(host, port, SortAlgorithm.BUBBLE, WireFormat.PROTOBUF);
+    }
+
+    public Client(@NotNull String host, int port, @NotNull SortAlgorithm sortAlgorithm,
+                  @NotNull WireFormat wireFormat) throws IOException {
+        this(host, port, sortAlgorithm, wireFormat, 1);
+    }
+
+    /**
+     * @param pipelineDepth maximum number of requests sent without having received their responses
+     */
+    public Client(@NotNull String host, int port, @NotNull SortAlgorithm sortAlgorithm,
+                  @NotNull WireFormat wireFormat, int pipelineDepth) throws IOException {
+        if (pipelineDepth <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.pipelineDepth = pipelineDepth;
+        inFlight = new Semaphore(pipelineDepth);
+
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        codec = wireFormat.getCodec();
+        new Handshake(sortAlgorithm, wireFormat, version).write(out);
     }
 
     public int[] sort(@NotNull int[] array) throws IOException {
-        ArrayOuterClass.Array protoArray = ArrayUtils.toProtoArray(array);
-        byte[] serialized = protoArray.toByteArray();
+        return await(submit(array)).getArray();
+    }
+
+    /**
+     * Sorts remaining elements of specified buffer, which is left unchanged.
+     */
+    public int[] sort(@NotNull IntBuffer array) throws IOException {
+        return await(submit(array)).getArray();
+    }
+
+    @NotNull
+    public CompletableFuture<int[]> sortAsync(@NotNull int[] array) {
+        return submit(array).thenApply(SortResponse::getArray);
+    }
+
+    /**
+     * Sends sort request without waiting for responses to previous ones.
+     * Blocks while pipeline depth requests are in flight. With pipeline depth of 1 the whole
+     * request-response exchange is made by calling thread.
+     */
+    @NotNull
+    public CompletableFuture<SortResponse> submit(@NotNull int[] array) {
+        return submitSerialized(codec.encode(array));
+    }
+
+    /**
+     * Sends remaining elements of specified buffer like {@link #submit(int[])}, buffer is left unchanged.
+     */
+    @NotNull
+    public CompletableFuture<SortResponse> submit(@NotNull IntBuffer array) {
+        return submitSerialized(codec.encode(array));
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @NotNull
+    private CompletableFuture<SortResponse> submitSerialized(@NotNull ByteBuffer serialized) {
+        if (pipelineDepth == 1) {
+            synchronized (out) {
+                try {
+                    long sent = writeRequest(serialized);
+                    return CompletableFuture.completedFuture(readResponse(() -> sent));
+                } catch (IOException exception) {
+                    return CompletableFuture.failedFuture(exception);
+                }
+            }
+        }
+
+        if (readerFailure != null) {
+            return CompletableFuture.failedFuture(readerFailure);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(exception);
+        }
+        if (readerFailure != null) {
+            inFlight.release();
+            return CompletableFuture.failedFuture(readerFailure);
+        }
+
+        PendingRequest request = new PendingRequest(Integer.BYTES + serialized.remaining());
+        synchronized (out) {
+            startResponseReader();
+            pendingRequests.add(request);
+            //reader may have failed and drained the queue before the request was added
+            if (readerFailure != null) {
+                if (pendingRequests.remove(request)) {
+                    inFlight.release();
+                    request.response.completeExceptionally(readerFailure);
+                }
+                return request.response;
+            }
+            try {
+                writeRequest(serialized);
+            } catch (IOException exception) {
+                pendingRequests.remove(request);
+                inFlight.release();
+                request.response.completeExceptionally(exception);
+            }
+        }
+        return request.response;
+    }
+
+    @NotNull
+    private static SortResponse await(@NotNull CompletableFuture<SortResponse> response) throws IOException {
+        try {
+            return response.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new IOException(exception.getCause());
+        }
+    }
 
-        out.writeInt(serialized.length);
-        out.write(serialized);
+    private long writeRequest(@NotNull ByteBuffer serialized) throws IOException {
+        int size = serialized.remaining();
+        out.writeInt(size);
+        out.write(serialized.array(), serialized.arrayOffset() + serialized.position(), size);
         out.flush();
+        return Integer.BYTES + size;
+    }
 
-        clientProcessingTime = in.readLong();
-        sortTime = in.readLong();
-        int size = in.readInt();
+    /**
+     * @param sent supplies size of the request being answered, queried once the response has arrived
+     * @throws RequestRejectedException if server rejected the request, the next response can be read afterwards
+     */
+    @NotNull
+    private SortResponse readResponse(@NotNull LongSupplier sent) throws IOException {
+        ResponseHeader header = ResponseHeader.read(in, version);
+        if (header.isRejected()) {
+            throw new RequestRejectedException();
+        }
+        int size = header.getPayloadSize();
 
         byte[] serializedArray = new byte[size];
-        int read = 0;
-        while (read != size) {
-            read += in.read(serializedArray, read, size - read);
+        in.readFully(serializedArray);
+
+        SortResponse response = new SortResponse(codec.decode(ByteBuffer.wrap(serializedArray)),
+                header.getProcessingTime(), header.getSortTime(), header.getStageTimings(), sent.getAsLong(),
+                ResponseHeader.size(version) + size);
+        clientProcessingTime = response.getClientProcessingTime();
+        sortTime = response.getSortTime();
+        sentBytes = response.getSentBytes();
+        receivedBytes = response.getReceivedBytes();
+        return response;
+    }
+
+    private void startResponseReader() {
+        if (responseReader != null) {
+            return;
         }
 
-        return ArrayUtils.toIntArray(ArrayOuterClass.Array.parseFrom(serializedArray));
+        responseReader = new Thread(() -> {
+            try {
+                while (true) {
+                    SortResponse response;
+                    try {
+                        response = readResponse(() -> pendingRequests.element().sentBytes);
+                    } catch (RequestRejectedException exception) {
+                        PendingRequest request = pendingRequests.remove();
+                        inFlight.release();
+                        request.response.completeExceptionally(exception);
+                        continue;
+                    }
+                    PendingRequest request = pendingRequests.remove();
+                    inFlight.release();
+                    request.response.complete(response);
+                }
+            } catch (Exception exception) {
+                readerFailure = exception;
+                PendingRequest request;
+                while ((request = pendingRequests.poll()) != null) {
+                    inFlight.release();
+                    request.response.completeExceptionally(exception);
+                }
+            }
+        });
+        responseReader.setDaemon(true);
+        responseReader.start();
+    }
+
+    /**
+     * Request waiting for response. Servers answer requests of a connection in the order they were sent.
+     */
+    private static class PendingRequest {
+        private final CompletableFuture<SortResponse> response = new CompletableFuture<>();
+        private final long sentBytes;
+
+        private PendingRequest(long sentBytes) {
+            this.sentBytes = sentBytes;
+        }
     }
 }
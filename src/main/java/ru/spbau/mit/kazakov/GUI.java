@@ -1,13 +1,16 @@
 package ru.spbau.mit.kazakov;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.StackedAreaChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.text.Font;
@@ -17,23 +20,52 @@ import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import ru.spbau.mit.kazakov.performance.LatencyPercentiles;
+import ru.spbau.mit.kazakov.performance.Distribution;
+import ru.spbau.mit.kazakov.performance.LoadGenerator;
+import ru.spbau.mit.kazakov.performance.Parameter;
+import ru.spbau.mit.kazakov.performance.PerformanceListener;
 import ru.spbau.mit.kazakov.performance.PerformanceTestResult;
 import ru.spbau.mit.kazakov.performance.PerformanceTester;
+import ru.spbau.mit.kazakov.performance.ProgressSample;
+import ru.spbau.mit.kazakov.performance.ResultWriter;
 import ru.spbau.mit.kazakov.performance.ServerArchitecture;
+import ru.spbau.mit.kazakov.performance.ServerTargets;
+import ru.spbau.mit.kazakov.performance.StageBreakdown;
+import ru.spbau.mit.kazakov.performance.TrialStatistics;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.server.ServerConfig;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToDoubleFunction;
 import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 public class GUI extends Application {
     private static final String NONBLOCKING_ARCHITECTURE = "Nonblocking";
+    private static final String REACTOR_ARCHITECTURE = "Reactor";
+    private static final String ASYNC_ARCHITECTURE = "Async";
+    private static final String VIRTUAL_THREADS_ARCHITECTURE = "Virtual threads";
     private static final String BLOCKING_ARCHITECTURE = "Blocking";
     private static final String SIMPLE_ARCHITECTURE = "Simple";
     private static final String ARRAY_SIZE = "Array size";
     private static final String NUMBER_OF_CLIENTS = "Number of clients";
     private static final String QUERY_DELAY = "Query delay";
+    private static final String TIME_CHART = "Time, ms";
+    private static final String THROUGHPUT_CHART = "Throughput, queries/s";
+    private static final String BANDWIDTH_CHART = "Bandwidth, bytes/s";
+    private static final String DURATION_CHART = "Duration, ms";
+    private static final String STAGE_CHART = "Server stage breakdown, ms";
+    private static final String PROGRESS_CHART = "Current trial throughput, queries/s";
+    private static final String ARRIVAL_RATE = "Arrival rate";
+    private static final String WORKER_THREADS = "Worker threads";
+    private static final String IO_THREADS = "I/O threads";
 
     private static final UnaryOperator<TextFormatter.Change> INTEGER_FILTER = change -> {
         String input = change.getText();
@@ -43,6 +75,11 @@ public class GUI extends Application {
         return null;
     };
 
+    private final ExecutorService testExecutor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        return thread;
+    });
     private Scene mainScene;
 
     @Override
@@ -66,22 +103,60 @@ public class GUI extends Application {
         grid.add(title, 0, 0, 2, 1);
 
         ComboBox<String> architectureComboBox = new ComboBox<>();
-        architectureComboBox.getItems().addAll(SIMPLE_ARCHITECTURE, BLOCKING_ARCHITECTURE, NONBLOCKING_ARCHITECTURE);
+        architectureComboBox.getItems().addAll(SIMPLE_ARCHITECTURE, BLOCKING_ARCHITECTURE, NONBLOCKING_ARCHITECTURE,
+                REACTOR_ARCHITECTURE, ASYNC_ARCHITECTURE, VIRTUAL_THREADS_ARCHITECTURE);
         architectureComboBox.setValue(SIMPLE_ARCHITECTURE);
         addComboBoxField(1, "Architecture:", architectureComboBox, grid);
 
-        ComboBox<String> parameterComboBox = new ComboBox<>();
-        parameterComboBox.getItems().addAll(ARRAY_SIZE, NUMBER_OF_CLIENTS, QUERY_DELAY);
-        parameterComboBox.setValue(ARRAY_SIZE);
-        addComboBoxField(2, "Parameter:", parameterComboBox, grid);
+        ComboBox<SortAlgorithm> sortAlgorithmComboBox = new ComboBox<>();
+        sortAlgorithmComboBox.getItems().addAll(SortAlgorithm.values());
+        sortAlgorithmComboBox.setValue(SortAlgorithm.BUBBLE);
+        addComboBoxField(2, "Sort algorithm:", sortAlgorithmComboBox, grid);
+
+        ComboBox<WireFormat> wireFormatComboBox = new ComboBox<>();
+        wireFormatComboBox.getItems().addAll(WireFormat.values());
+        wireFormatComboBox.setValue(WireFormat.PROTOBUF);
+        addComboBoxField(3, "Wire format:", wireFormatComboBox, grid);
+
+        ComboBox<LoadGenerator> loadGeneratorComboBox = new ComboBox<>();
+        loadGeneratorComboBox.getItems().addAll(LoadGenerator.values());
+        loadGeneratorComboBox.setValue(LoadGenerator.THREADS);
+        addComboBoxField(4, "Load generator:", loadGeneratorComboBox, grid);
 
+        ComboBox<Distribution> distributionComboBox = new ComboBox<>();
+        distributionComboBox.getItems().addAll(Distribution.values());
+        distributionComboBox.setValue(Distribution.UNIFORM);
+        addComboBoxField(5, "Distribution:", distributionComboBox, grid);
 
-        TextField stepField = addIntegerField(3, "Step:", grid);
-        TextField maxValueField = addIntegerField(4, "Max value:", grid);
-        TextField arraySizeField = addIntegerField(5, "Array size:", grid);
-        TextField clientsNumberField = addIntegerField(6, "Number of clients:", grid);
-        TextField queryDelayField = addIntegerField(7, "Query delay:", grid);
-        TextField queriesNumberField = addIntegerField(8, "Number of queries:", grid);
+        ComboBox<String> parameterComboBox = new ComboBox<>();
+        parameterComboBox.getItems().addAll(ARRAY_SIZE, NUMBER_OF_CLIENTS, QUERY_DELAY, ARRIVAL_RATE,
+                WORKER_THREADS, IO_THREADS);
+        parameterComboBox.setValue(ARRAY_SIZE);
+        addComboBoxField(6, "Parameter:", parameterComboBox, grid);
+
+
+        TextField stepField = addIntegerField(7, "Step:", grid);
+        TextField maxValueField = addIntegerField(8, "Max value:", grid);
+        TextField arraySizeField = addIntegerField(9, "Array size:", grid);
+        TextField clientsNumberField = addIntegerField(10, "Number of clients:", grid);
+        TextField queryDelayField = addIntegerField(11, "Query delay:", grid);
+        TextField queriesNumberField = addIntegerField(12, "Number of queries:", grid);
+        TextField pipelineDepthField = addIntegerField(13, "Pipeline depth:", grid);
+        pipelineDepthField.setText("1");
+        TextField arrivalRateField = addIntegerField(14, "Arrival rate:", grid);
+        arrivalRateField.setText("0");
+        TextField warmupQueriesField = addIntegerField(15, "Warmup queries:", grid);
+        warmupQueriesField.setText("0");
+        TextField warmupDurationField = addIntegerField(16, "Warmup duration:", grid);
+        warmupDurationField.setText("0");
+        TextField trialsField = addIntegerField(17, "Trials:", grid);
+        trialsField.setText("1");
+        TextField workerThreadsField = addIntegerField(18, "Worker threads:", grid);
+        workerThreadsField.setText(String.valueOf(ServerConfig.DEFAULT_WORKER_THREADS));
+        TextField ioThreadsField = addIntegerField(19, "I/O threads:", grid);
+        ioThreadsField.setText(String.valueOf(Runtime.getRuntime().availableProcessors()));
+        TextField hostField = addTextField(20, "Server host:", grid);
+        hostField.setText(ServerTargets.DEFAULT_HOST);
 
 
         Label fileLabel = new Label();
@@ -94,8 +169,8 @@ public class GUI extends Application {
                 fileLabel.setText(file.getPath());
             }
         });
-        grid.add(browseButton, 0, 9);
-        grid.add(fileLabel, 1, 9);
+        grid.add(browseButton, 0, 21);
+        grid.add(fileLabel, 1, 21);
 
         Button startButton = new Button("Start");
         startButton.setOnAction(e -> {
@@ -105,15 +180,26 @@ public class GUI extends Application {
             Integer clientsNumber = getIntValue(clientsNumberField);
             Integer queryDelay = getIntValue(queryDelayField);
             Integer queriesNumber = getIntValue(queriesNumberField);
+            Integer pipelineDepth = getIntValue(pipelineDepthField);
+            Integer arrivalRate = getIntValue(arrivalRateField);
+            Integer warmupQueries = getIntValue(warmupQueriesField);
+            Integer warmupDuration = getIntValue(warmupDurationField);
+            Integer trials = getIntValue(trialsField);
+            Integer workerThreads = getIntValue(workerThreadsField);
+            Integer ioThreads = getIntValue(ioThreadsField);
+            String host = hostField.getText().trim();
             String directory = fileLabel.getText().trim();
 
             if (step == null || maxValue == null || arraySize == null || clientsNumber == null
-                    || queryDelay == null || queriesNumber == null || directory.isEmpty()) {
+                    || queryDelay == null || queriesNumber == null || pipelineDepth == null || arrivalRate == null
+                    || warmupQueries == null || warmupDuration == null || trials == null || workerThreads == null
+                    || ioThreads == null || host.isEmpty() || directory.isEmpty()) {
                 showAlertDialog("Fields can't be empty");
                 return;
             }
             if (step <= 0 || maxValue <= 0 || arraySize <= 0 || clientsNumber <= 0
-                    || queryDelay < 0 || queriesNumber <= 0) {
+                    || queryDelay < 0 || queriesNumber <= 0 || pipelineDepth <= 0
+                    || trials <= 0 || workerThreads <= 0 || ioThreads <= 0) {
                 showAlertDialog("Values must be positive");
                 return;
             }
@@ -124,6 +210,15 @@ public class GUI extends Application {
                 case NONBLOCKING_ARCHITECTURE:
                     architecture = ServerArchitecture.NONBLOCKING;
                     break;
+                case REACTOR_ARCHITECTURE:
+                    architecture = ServerArchitecture.REACTOR;
+                    break;
+                case ASYNC_ARCHITECTURE:
+                    architecture = ServerArchitecture.ASYNC;
+                    break;
+                case VIRTUAL_THREADS_ARCHITECTURE:
+                    architecture = ServerArchitecture.VIRTUAL_THREADS;
+                    break;
                 case BLOCKING_ARCHITECTURE:
                     architecture = ServerArchitecture.BLOCKING;
                     break;
@@ -133,78 +228,82 @@ public class GUI extends Application {
             }
 
             PerformanceTester tester = new PerformanceTester(queriesNumber, queryDelay, clientsNumber, arraySize);
-            PerformanceTestResult result;
-            String parameter = parameterComboBox.getValue();
-
-            try {
-                switch (parameter) {
-                    case ARRAY_SIZE:
-                        if (arraySize > maxValue) {
-                            showAlertDialog("Initial value should be less than max value");
-                            return;
-                        }
-                        result = tester.testForArraySize(architecture, step, maxValue);
-                        break;
-                    case NUMBER_OF_CLIENTS:
-                        if (clientsNumber > maxValue) {
-                            showAlertDialog("Initial value should be less than max value");
+            tester.setSortAlgorithm(sortAlgorithmComboBox.getValue());
+            tester.setWireFormat(wireFormatComboBox.getValue());
+            tester.setLoadGenerator(loadGeneratorComboBox.getValue());
+            tester.setDistribution(distributionComboBox.getValue());
+            tester.setPipelineDepth(pipelineDepth);
+            tester.setArrivalRate(arrivalRate);
+            tester.setWarmupQueries(warmupQueries);
+            tester.setWarmupDuration(warmupDuration);
+            tester.setTrials(trials);
+            tester.setWorkerThreads(workerThreads);
+            tester.setIoThreads(ioThreads);
+            tester.setTargets(ServerTargets.ofHost(host));
+
+            Parameter parameter;
+            int initValue;
+            switch (parameterComboBox.getValue()) {
+                case ARRAY_SIZE:
+                    parameter = Parameter.ARRAY_SIZE;
+                    initValue = arraySize;
+                    break;
+                case NUMBER_OF_CLIENTS:
+                    parameter = Parameter.CLIENTS_NUMBER;
+                    initValue = clientsNumber;
+                    break;
+                case ARRIVAL_RATE:
+                    if (arrivalRate == 0) {
+                        showAlertDialog("Initial arrival rate must be positive");
+                        return;
+                    }
+                    parameter = Parameter.ARRIVAL_RATE;
+                    initValue = arrivalRate;
+                    break;
+                case WORKER_THREADS:
+                    parameter = Parameter.WORKER_THREADS;
+                    initValue = workerThreads;
+                    break;
+                case IO_THREADS:
+                    parameter = Parameter.IO_THREADS;
+                    initValue = ioThreads;
+                    break;
+                default:
+                    parameter = Parameter.QUERIES_DELAY;
+                    initValue = queryDelay;
+                    break;
+            }
+            if (initValue > maxValue) {
+                showAlertDialog("Initial value should be less than max value");
+                return;
+            }
+
+            //test runs in background, charts are updated as its steps finish
+            startButton.setDisable(true);
+            ChartWindow chart = new ChartWindow(parameter, tester);
+            tester.addListener(chart);
+            tester.testAsync(parameter, architecture, step, maxValue, testExecutor)
+                    .whenComplete((result, exception) -> Platform.runLater(() -> {
+                        startButton.setDisable(false);
+                        chart.finish(result);
+                        if (exception != null) {
+                            showAlertDialog("Connection error");
                             return;
                         }
-                        result = tester.testForClientsNumber(architecture, step, maxValue);
-                        break;
-                    default:
-                        if (queryDelay > maxValue) {
-                            showAlertDialog("Initial value should be less than max value");
-                            return;
+                        try {
+                            ResultWriter.write(result, new File(directory));
+                        } catch (IOException writeException) {
+                            showAlertDialog("Unable to write to file");
                         }
-                        result = tester.testForQueriesDelay(architecture, step, maxValue);
-                        break;
-                }
-                showChart(result);
-                createResultFiles(result, directory);
-            } catch (ConnectionException exception) {
-                showAlertDialog("Connection error");
-            } catch (IOException exception) {
-                showAlertDialog("Unable to write to file");
-            }
+                    }));
         });
 
         HBox connectHBox = new HBox(10);
         connectHBox.setAlignment(Pos.BOTTOM_RIGHT);
         connectHBox.getChildren().add(startButton);
-        grid.add(connectHBox, 1, 10);
+        grid.add(connectHBox, 1, 22);
 
-        mainScene = new Scene(grid, 400, 500);
-    }
-
-    private void createResultFiles(@NotNull PerformanceTestResult result, String directory) throws IOException {
-        File description = new File(directory, "description");
-        try (FileWriter writer = new FileWriter(description)) {
-            writer.write("Architecture: " + result.getArchitecture() + "\n");
-            writer.write("Parameter: " + result.getParameter() + "\n");
-            writer.write("Step: " + result.getStep() + "\n");
-            writer.write("Max value: " + result.getMaxValue() + "\n");
-            writer.write("Array size: " + result.getArraySize() + "\n");
-            writer.write("Number of clients: " + result.getClientsNumber() + "\n");
-            writer.write("Query delay: " + result.getQueriesDelay() + "\n");
-            writer.write("Number of queries: " + result.getQueriesNumber() + "\n");
-        }
-
-        File answerTime = new File(directory, "answer_time");
-        printDots(answerTime, result.getAnswerTime(), result.getInitValue(), result.getStep());
-        File sortTime = new File(directory, "sort_time");
-        printDots(sortTime, result.getSortTime(), result.getInitValue(), result.getStep());
-        File clientProcessingTime = new File(directory, "client_processing_time");
-        printDots(clientProcessingTime, result.getClientProcessingTime(), result.getInitValue(), result.getStep());
-    }
-
-    private void printDots(@NotNull File file, @NotNull List<Double> time, int initValue, int step) throws IOException {
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(time.size() + "\n");
-            for(int i = 0; i < time.size(); i++) {
-                writer.write(initValue + i * step + " " + time.get(i) + "\n");
-            }
-        }
+        mainScene = new Scene(grid, 400, 1020);
     }
 
     @Nullable
@@ -217,25 +316,67 @@ public class GUI extends Application {
         }
     }
 
-    private void showChart(@NotNull PerformanceTestResult result) {
-        NumberAxis xAxis = new NumberAxis();
-        xAxis.setLabel(result.getParameter().toString());
-        NumberAxis yAxis = new NumberAxis();
-        yAxis.setLabel("Time");
-        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
-
-        XYChart.Series answerTime = createSeries("Answer time", result.getAnswerTime(),
-                result.getInitValue(), result.getStep());
-        XYChart.Series sortTime = createSeries("Sort time", result.getSortTime(),
-                result.getInitValue(), result.getStep());
-        XYChart.Series clientProcessingTime = createSeries("Client processing time",
-                result.getClientProcessingTime(), result.getInitValue(), result.getStep());
-        lineChart.getData().addAll(answerTime, sortTime, clientProcessingTime);
-
-        Scene chartScene = new Scene(lineChart, 800, 600);
-        Stage chart = new Stage();
-        chart.setScene(chartScene);
-        chart.show();
+    /**
+     * Replaces chart's series with the ones of specified kind.
+     */
+    private void fillChart(@NotNull LineChart<Number, Number> lineChart, @NotNull PerformanceTestResult result,
+                           @NotNull String kind) {
+        lineChart.getData().clear();
+        lineChart.getYAxis().setLabel(kind);
+        int initValue = result.getInitValue();
+        int step = result.getStep();
+
+        switch (kind) {
+            case THROUGHPUT_CHART:
+                lineChart.getData().add(createSeries("Completed queries", result.getThroughput(), initValue, step));
+                break;
+            case BANDWIDTH_CHART:
+                lineChart.getData().addAll(
+                        createSeries("Sent", result.getRequestBytesPerSecond(), initValue, step),
+                        createSeries("Received", result.getResponseBytesPerSecond(), initValue, step));
+                break;
+            case DURATION_CHART:
+                lineChart.getData().add(createSeries("Step duration", result.getDuration(), initValue, step));
+                break;
+            default:
+                lineChart.getData().addAll(
+                        createSeries("Answer time", result.getAnswerTime(), initValue, step),
+                        createSeries("Sort time", result.getSortTime(), initValue, step),
+                        createSeries("Client processing time", result.getClientProcessingTime(), initValue, step));
+
+                List<LatencyPercentiles> percentiles = result.getAnswerTimePercentiles();
+                lineChart.getData().addAll(
+                        createPercentileSeries("Answer time p50", percentiles, LatencyPercentiles::getP50, result),
+                        createPercentileSeries("Answer time p90", percentiles, LatencyPercentiles::getP90, result),
+                        createPercentileSeries("Answer time p99", percentiles, LatencyPercentiles::getP99, result),
+                        createPercentileSeries("Answer time p99.9", percentiles, LatencyPercentiles::getP999, result),
+                        createPercentileSeries("Answer time max", percentiles, LatencyPercentiles::getMax, result));
+
+                if (result.getTrials() > 1) {
+                    List<TrialStatistics> statistics = result.getAnswerTimeStatistics();
+                    lineChart.getData().addAll(
+                            createSeries("Answer time 95% CI low", statistics.stream()
+                                    .map(point -> point.getMean() - point.getConfidenceInterval())
+                                    .collect(Collectors.toList()), initValue, step),
+                            createSeries("Answer time 95% CI high", statistics.stream()
+                                    .map(point -> point.getMean() + point.getConfidenceInterval())
+                                    .collect(Collectors.toList()), initValue, step));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Replaces series of chart of mean server time per request stacked by processing stage.
+     */
+    private void fillStageChart(@NotNull StackedAreaChart<Number, Number> stageChart,
+                                @NotNull PerformanceTestResult result) {
+        stageChart.getData().clear();
+        List<StageBreakdown> breakdown = result.getStageBreakdown();
+        for (ProcessingStage stage : ProcessingStage.values()) {
+            List<Double> time = breakdown.stream().map(point -> point.getMeanTime(stage)).collect(Collectors.toList());
+            stageChart.getData().add(createSeries(stage.toString(), time, result.getInitValue(), result.getStep()));
+        }
     }
 
     @NotNull
@@ -251,6 +392,15 @@ public class GUI extends Application {
         return series;
     }
 
+    @NotNull
+    private XYChart.Series<Number, Number> createPercentileSeries(@NotNull String name,
+                                                                  @NotNull List<LatencyPercentiles> percentiles,
+                                                                  @NotNull ToDoubleFunction<LatencyPercentiles> percentile,
+                                                                  @NotNull PerformanceTestResult result) {
+        List<Double> time = percentiles.stream().map(percentile::applyAsDouble).collect(Collectors.toList());
+        return createSeries(name, time, result.getInitValue(), result.getStep());
+    }
+
     @NotNull
     private TextField addIntegerField(int row, @NotNull String text, @NotNull GridPane grid) {
         Label label = new Label(text);
@@ -270,7 +420,7 @@ public class GUI extends Application {
         return integerField;
     }
 
-    private void addComboBoxField(int row, @NotNull String text, @NotNull ComboBox<String> comboBox, @NotNull GridPane grid) {
+    private <T> void addComboBoxField(int row, @NotNull String text, @NotNull ComboBox<T> comboBox, @NotNull GridPane grid) {
         comboBox.setFocusTraversable(false);
         comboBox.setMaxWidth(Double.MAX_VALUE);
         Label label = new Label(text);
@@ -285,6 +435,120 @@ public class GUI extends Application {
         alert.showAndWait();
     }
 
+    /**
+     * Window with charts of a running test. Points are added as steps finish, throughput of the running trial
+     * is plotted every second.
+     */
+    private class ChartWindow implements PerformanceListener {
+        private final LineChart<Number, Number> lineChart;
+        private final StackedAreaChart<Number, Number> stageChart;
+        private final LineChart<Number, Number> progressChart;
+        private final XYChart.Series<Number, Number> progressSeries = new XYChart.Series<>();
+        private final ComboBox<String> chartComboBox = new ComboBox<>();
+        private final BorderPane root;
+        private final Label statusLabel = new Label("Running");
+        private final Button cancelButton = new Button("Cancel");
+        @Nullable
+        private PerformanceTestResult result = null;
+
+        private ChartWindow(@NotNull Parameter parameter, @NotNull PerformanceTester tester) {
+            lineChart = new LineChart<>(createAxis(parameter.toString()), new NumberAxis());
+            lineChart.setAnimated(false);
+            NumberAxis stageAxis = new NumberAxis();
+            stageAxis.setLabel(STAGE_CHART);
+            stageChart = new StackedAreaChart<>(createAxis(parameter.toString()), stageAxis);
+            stageChart.setAnimated(false);
+            NumberAxis progressAxis = new NumberAxis();
+            progressAxis.setLabel(PROGRESS_CHART);
+            progressChart = new LineChart<>(createAxis("Seconds since trial start"), progressAxis);
+            progressChart.setAnimated(false);
+            progressChart.getData().add(progressSeries);
+            root = new BorderPane(lineChart);
+
+            chartComboBox.getItems().addAll(TIME_CHART, THROUGHPUT_CHART, BANDWIDTH_CHART, DURATION_CHART,
+                    STAGE_CHART, PROGRESS_CHART);
+            chartComboBox.setFocusTraversable(false);
+            chartComboBox.setValue(TIME_CHART);
+            chartComboBox.setOnAction(e -> redraw());
+
+            cancelButton.setOnAction(e -> {
+                tester.cancel();
+                cancelButton.setDisable(true);
+                statusLabel.setText("Cancelling");
+            });
+            HBox statusHBox = new HBox(10, cancelButton, statusLabel);
+            statusHBox.setAlignment(Pos.CENTER_LEFT);
+
+            root.setTop(chartComboBox);
+            root.setBottom(statusHBox);
+            BorderPane.setMargin(chartComboBox, new Insets(10, 10, 0, 10));
+            BorderPane.setMargin(statusHBox, new Insets(0, 10, 10, 10));
+            Stage chart = new Stage();
+            chart.setScene(new Scene(root, 800, 600));
+            chart.show();
+        }
+
+        @Override
+        public void stepCompleted(@NotNull PerformanceTestResult result) {
+            Platform.runLater(() -> {
+                this.result = result;
+                redraw();
+            });
+        }
+
+        @Override
+        public void progress(@NotNull ProgressSample sample) {
+            Platform.runLater(() -> {
+                String name = "Step " + (sample.getStep() + 1) + ", trial " + (sample.getTrial() + 1);
+                if (!name.equals(progressSeries.getName())) {
+                    progressSeries.setName(name);
+                    progressSeries.getData().clear();
+                }
+                progressSeries.getData().add(new XYChart.Data<>(sample.getElapsedTime(), sample.getThroughput()));
+                statusLabel.setText(String.format("%s: %.1f queries/s, mean %.2f ms, p99 %.2f ms", name,
+                        sample.getThroughput(), sample.getMeanAnswerTime(), sample.getP99AnswerTime()));
+            });
+        }
+
+        /**
+         * Shows final result, null if test failed.
+         */
+        private void finish(@Nullable PerformanceTestResult result) {
+            cancelButton.setDisable(true);
+            if (result == null) {
+                statusLabel.setText("Failed");
+                return;
+            }
+            statusLabel.setText(result.isCancelled() ? "Cancelled" : "Finished");
+            this.result = result;
+            redraw();
+        }
+
+        private void redraw() {
+            String kind = chartComboBox.getValue();
+            if (PROGRESS_CHART.equals(kind)) {
+                root.setCenter(progressChart);
+            } else if (STAGE_CHART.equals(kind)) {
+                root.setCenter(stageChart);
+                if (result != null) {
+                    fillStageChart(stageChart, result);
+                }
+            } else {
+                root.setCenter(lineChart);
+                if (result != null) {
+                    fillChart(lineChart, result, kind);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static NumberAxis createAxis(@NotNull String label) {
+        NumberAxis axis = new NumberAxis();
+        axis.setLabel(label);
+        return axis;
+    }
+
     public static void main(String[] args) {
         Application.launch(args);
     }
@@ -0,0 +1,12 @@
+package ru.spbau.mit.kazakov;
+
+import java.io.IOException;
+
+/**
+ * Thrown when server is overloaded and rejects a request instead of sorting it. Connection remains usable.
+ */
+public class RequestRejectedException extends IOException {
+    public RequestRejectedException() {
+        super("Request rejected by overloaded server");
+    }
+}
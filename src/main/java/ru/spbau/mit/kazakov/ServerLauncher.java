@@ -0,0 +1,132 @@
+package ru.spbau.mit.kazakov;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.performance.ServerArchitecture;
+import ru.spbau.mit.kazakov.server.MetricsEndpoint;
+import ru.spbau.mit.kazakov.server.OverloadPolicy;
+import ru.spbau.mit.kazakov.server.Server;
+import ru.spbau.mit.kazakov.server.ServerConfig;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import static ru.spbau.mit.kazakov.utils.CommandLineUtils.names;
+import static ru.spbau.mit.kazakov.utils.CommandLineUtils.toConstant;
+import static ru.spbau.mit.kazakov.utils.CommandLineUtils.toInt;
+
+/**
+ * Starts server of specified architecture and serves clients until the process is killed.
+ * Server's metrics are registered in JMX and, if metrics port is specified, served as plain text
+ * at {@code http://<host>:<metrics port>/metrics}.
+ */
+public class ServerLauncher {
+    private static final String USAGE = "Usage: ServerLauncher --architecture <architecture> [--host <bind address>]"
+            + " [--port <port>]\n"
+            + "    [--worker-threads <n>] [--io-threads <n>] [--metrics-port <port>]\n"
+            + "    [--queue-capacity <n>] [--overload-policy <policy>] [--cache-capacity <bytes>]\n"
+            + "Queue capacity 0 means unbounded, BLOCKING and NONBLOCKING servers respect queue options\n"
+            + "Cache capacity 0 disables result cache, SIMPLE, BLOCKING and NONBLOCKING servers respect it\n"
+            + "Architectures: " + names(ServerArchitecture.values()) + "\n"
+            + "Overload policies: " + names(OverloadPolicy.values());
+
+    public static void main(String[] args) {
+        ServerArchitecture architecture;
+        ServerConfig config;
+        int metricsPort;
+        try {
+            architecture = parseArchitecture(args);
+            config = parseConfig(args, architecture);
+            metricsPort = parseMetricsPort(args);
+        } catch (IllegalArgumentException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        Server server;
+        try {
+            server = architecture.createServer(config);
+            server.getMetrics().register(config.getPort());
+            if (metricsPort != 0) {
+                new MetricsEndpoint(server.getMetrics(), new InetSocketAddress(config.getHost(), metricsPort));
+            }
+        } catch (IOException | JMException exception) {
+            System.err.println("Unable to start server: " + exception.getMessage());
+            System.exit(1);
+            return;
+        }
+        System.out.println(architecture + " server listens to " + config.getHost() + ":" + config.getPort()
+                + " with " + config.getWorkerThreads() + " worker and " + config.getIoThreads() + " I/O threads");
+        if (metricsPort != 0) {
+            System.out.println("Metrics are served at http://" + config.getHost() + ":" + metricsPort
+                    + MetricsEndpoint.PATH);
+        }
+        server.start();
+    }
+
+    @NotNull
+    private static ServerArchitecture parseArchitecture(@NotNull String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--architecture")) {
+                return toConstant(ServerArchitecture.class, args[i + 1]);
+            }
+        }
+        throw new IllegalArgumentException("Architecture isn't specified");
+    }
+
+    /**
+     * Returns port of metrics endpoint, 0 if it isn't specified.
+     */
+    private static int parseMetricsPort(@NotNull String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--metrics-port")) {
+                return toInt(args[i], args[i + 1], 1);
+            }
+        }
+        return 0;
+    }
+
+    @NotNull
+    private static ServerConfig parseConfig(@NotNull String[] args, @NotNull ServerArchitecture architecture) {
+        ServerConfig.ServerConfigBuilder config = ServerConfig.builder().port(architecture.getDefaultPort());
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+
+            switch (option) {
+                case "--architecture":
+                case "--metrics-port":
+                    break;
+                case "--host":
+                    config.host(value);
+                    break;
+                case "--port":
+                    config.port(toInt(option, value, 0));
+                    break;
+                case "--worker-threads":
+                    config.workerThreads(toInt(option, value, 1));
+                    break;
+                case "--io-threads":
+                    config.ioThreads(toInt(option, value, 1));
+                    break;
+                case "--queue-capacity":
+                    config.queueCapacity(toInt(option, value, 0));
+                    break;
+                case "--overload-policy":
+                    config.overloadPolicy(toConstant(OverloadPolicy.class, value));
+                    break;
+                case "--cache-capacity":
+                    config.cacheCapacity(toInt(option, value, 0));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        return config.build();
+    }
+}
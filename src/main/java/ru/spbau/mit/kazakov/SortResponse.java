@@ -0,0 +1,22 @@
+package ru.spbau.mit.kazakov;
+
+import lombok.Value;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+
+/**
+ * Server's answer to a single sort request. Times are measured by server in nanoseconds.
+ */
+@Value
+public class SortResponse {
+    private int[] array;
+    private long clientProcessingTime;
+    private long sortTime;
+    /**
+     * Time of each processing stage, null if server answered with legacy header.
+     */
+    @Nullable
+    private StageTimings stageTimings;
+    private long sentBytes;
+    private long receivedBytes;
+}
@@ -0,0 +1,176 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Arrays clients send, generated once from a seed and memory-mapped, so that generation isn't a part of
+ * answer time and every server gets byte-identical input. Arrays of each distribution and size are stored
+ * in their own file of a corpus directory as little-endian int32 values after a header; existing files are reused.
+ */
+public class Corpus {
+    private static final int MAGIC = 0x534f5254;
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private final Map<Integer, SizedArrays> arrays = new HashMap<>();
+
+    private Corpus() {
+    }
+
+    /**
+     * Maps arrays of specified distribution and sizes, writing files which don't exist yet.
+     *
+     * @param seed  seed arrays are generated from, arrays of the same distribution, size, seed and count
+     *              are always the same
+     * @param count number of arrays of each size, clients cycle through them
+     */
+    @NotNull
+    public static Corpus open(@NotNull Path directory, @NotNull Distribution distribution, long seed, int count,
+                              @NotNull Collection<Integer> sizes) throws IOException {
+        if (count <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Files.createDirectories(directory);
+
+        Corpus corpus = new Corpus();
+        for (int size : sizes) {
+            if (corpus.arrays.containsKey(size)) {
+                continue;
+            }
+            Path file = directory.resolve("corpus-" + distribution.name().toLowerCase(Locale.ROOT) + "-" + seed
+                    + "-" + count + "x" + size + ".bin");
+            if (!Files.exists(file)) {
+                write(file, distribution, seed, count, size);
+            }
+            corpus.arrays.put(size, map(file, distribution, seed, count, size));
+        }
+        return corpus;
+    }
+
+    /**
+     * Generates arrays of a single size. File is written under a temporary name and then renamed,
+     * so that concurrent runs never map a partially written file.
+     */
+    public static void write(@NotNull Path file, @NotNull Distribution distribution, long seed, int count,
+                             int size) throws IOException {
+        if (count <= 0 || size <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), "corpus", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(distribution.ordinal()).putLong(seed).putInt(count).putInt(size);
+
+                SplittableRandom random = new SplittableRandom(seed * 31 + size);
+                int[] array = new int[size];
+                for (int i = 0; i < count; i++) {
+                    distribution.fill(array, random);
+                    for (int value : array) {
+                        if (!buffer.hasRemaining()) {
+                            writeFully(channel, buffer);
+                        }
+                        buffer.putInt(value);
+                    }
+                }
+                writeFully(channel, buffer);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Returns read-only view of array number index modulo count of specified size. Nothing is copied.
+     *
+     * @throws IllegalArgumentException if corpus has no arrays of the size
+     */
+    @NotNull
+    public IntBuffer get(int size, long index) {
+        SizedArrays sized = arrays.get(size);
+        if (sized == null) {
+            throw new IllegalArgumentException("No arrays of size " + size);
+        }
+        return sized.get(Math.floorMod(index, sized.count));
+    }
+
+    private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @NotNull
+    private static SizedArrays map(@NotNull Path file, @NotNull Distribution distribution, long seed, int count,
+                                   int size) throws IOException {
+        long arrayBytes = (long) size * Integer.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != HEADER_SIZE + count * arrayBytes) {
+                throw new IOException("Corpus file has unexpected size: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != distribution.ordinal() || header.getLong() != seed
+                    || header.getInt() != count || header.getInt() != size) {
+                throw new IOException("Corpus file doesn't match its name: " + file);
+            }
+
+            //a single mapping is limited to 2 GB, so large files are mapped in chunks of whole arrays
+            int arraysPerChunk = (int) Math.min(count, Integer.MAX_VALUE / arrayBytes);
+            if (arraysPerChunk == 0) {
+                throw new IOException("Array of size " + size + " doesn't fit into a mapping");
+            }
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(count + arraysPerChunk - 1) / arraysPerChunk];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = HEADER_SIZE + (long) i * arraysPerChunk * arrayBytes;
+                long length = Math.min(arraysPerChunk, count - (long) i * arraysPerChunk) * arrayBytes;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+            return new SizedArrays(chunks, arraysPerChunk, count, (int) arrayBytes);
+        }
+    }
+
+    /**
+     * Mapped arrays of a single size.
+     */
+    private static class SizedArrays {
+        private final MappedByteBuffer[] chunks;
+        private final int arraysPerChunk;
+        private final int count;
+        private final int arrayBytes;
+
+        private SizedArrays(@NotNull MappedByteBuffer[] chunks, int arraysPerChunk, int count, int arrayBytes) {
+            this.chunks = chunks;
+            this.arraysPerChunk = arraysPerChunk;
+            this.count = count;
+            this.arrayBytes = arrayBytes;
+        }
+
+        @NotNull
+        private IntBuffer get(int index) {
+            ByteBuffer chunk = chunks[index / arraysPerChunk];
+            return chunk.slice(index % arraysPerChunk * arrayBytes, arrayBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asIntBuffer();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * How values of arrays sent by clients are distributed.
+ */
+public enum Distribution {
+    UNIFORM {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = random.nextInt();
+            }
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Uniform";
+        }
+    },
+    SORTED {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            UNIFORM.fill(array, random);
+            Arrays.sort(array);
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Sorted";
+        }
+    },
+    REVERSED {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            SORTED.fill(array, random);
+            for (int i = 0, j = array.length - 1; i < j; i++, j--) {
+                swap(array, i, j);
+            }
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Reversed";
+        }
+    },
+    /**
+     * Sorted array with one percent of its length, but at least one, of random pairs of elements swapped.
+     */
+    NEARLY_SORTED {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            SORTED.fill(array, random);
+            int swaps = Math.max(1, array.length / 100);
+            for (int i = 0; i < swaps; i++) {
+                swap(array, random.nextInt(array.length), random.nextInt(array.length));
+            }
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Nearly sorted";
+        }
+    },
+    /**
+     * Values are taken from a set of 16 random values.
+     */
+    FEW_DISTINCT {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            int[] values = new int[FEW_DISTINCT_VALUES];
+            UNIFORM.fill(values, random);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values[random.nextInt(values.length)];
+            }
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Few distinct";
+        }
+    },
+    /**
+     * Value k out of as many values as there are elements is taken with probability proportional to 1 / (k + 1).
+     */
+    ZIPFIAN {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            double[] cumulative = new double[array.length];
+            double sum = 0;
+            for (int k = 0; k < cumulative.length; k++) {
+                sum += 1.0 / (k + 1);
+                cumulative[k] = sum;
+            }
+            for (int i = 0; i < array.length; i++) {
+                int k = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                array[i] = k >= 0 ? k : -k - 1;
+            }
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Zipfian";
+        }
+    },
+    /**
+     * 16 ascending runs of random values.
+     */
+    SAWTOOTH {
+        @Override
+        void fill(@NotNull int[] array, @NotNull SplittableRandom random) {
+            UNIFORM.fill(array, random);
+            int runLength = (array.length + SAWTOOTH_RUNS - 1) / SAWTOOTH_RUNS;
+            for (int from = 0; from < array.length; from += runLength) {
+                Arrays.sort(array, from, Math.min(from + runLength, array.length));
+            }
+        }
+
+        @Override
+        @NotNull
+        public String toString() {
+            return "Sawtooth";
+        }
+    };
+
+    private static final int FEW_DISTINCT_VALUES = 16;
+    private static final int SAWTOOTH_RUNS = 16;
+
+    /**
+     * Fills specified array with values of this distribution.
+     */
+    abstract void fill(@NotNull int[] array, @NotNull SplittableRandom random);
+
+    private static void swap(@NotNull int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.spbau.mit.kazakov.performance;
+
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of a single test step. Values are in milliseconds.
+ */
+@Value
+public class LatencyPercentiles {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private double p50;
+    private double p90;
+    private double p99;
+    private double p999;
+    private double max;
+
+    /**
+     * Extracts percentiles from histogram of nanosecond values.
+     */
+    @NotNull
+    public static LatencyPercentiles of(@NotNull Histogram histogram) {
+        return new LatencyPercentiles(
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * How tester drives simulated clients.
+ */
+public enum LoadGenerator {
+    /**
+     * Every client is a blocking {@link ru.spbau.mit.kazakov.Client} run by its own platform thread.
+     */
+    THREADS {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Thread per client";
+        }
+    },
+    /**
+     * Clients are nonblocking connections multiplexed over a few selector threads,
+     * which lets a single machine simulate tens of thousands of them.
+     */
+    MULTIPLEXED {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Multiplexed";
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package ru.spbau.mit.kazakov.performance;
+
+import lombok.Builder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.mit.kazakov.SortResponse;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs a trial with clients being nonblocking connections multiplexed over a few selector threads.
+ * Queries follow the rules of {@link PerformanceTester}'s client threads: in closed-loop mode a client keeps
+ * at most pipeline depth requests in flight and waits queries delay after sending a request, or after receiving
+ * its response if pipeline depth is 1; in open-loop mode requests are sent on schedule regardless of responses.
+ * Answer time is measured from the moment request was sent, or was due to be sent in open-loop mode,
+ * to the moment its response is received and decoded.
+ */
+class MultiplexedClients {
+    private static final int MAX_SELECTOR_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int VERSION = Handshake.CURRENT_VERSION;
+    private static final int HEADER_SIZE = ResponseHeader.size(VERSION);
+
+    private final InetSocketAddress address;
+    private final int numberOfClients;
+    private final int numberOfQueries;
+    private final long queriesDelay;
+    private final int arraySize;
+    private final int pipelineDepth;
+    private final boolean openLoop;
+    private final long interval;
+    private final int warmupQueries;
+    private final long warmupDuration;
+    private final Handshake handshake;
+    private final ArrayCodec codec;
+    private final BooleanSupplier cancelled;
+    private final AtomicInteger failedQueries;
+    private final Corpus corpus;
+    private final Trial trial;
+    private final AtomicLong startTime;
+    private final AtomicInteger warmingUp;
+    private SelectorThread[] selectorThreads;
+
+    /**
+     * @param queriesDelay   milliseconds
+     * @param arrivalRate    total number of requests per second in open-loop mode, 0 for closed-loop mode
+     * @param warmupDuration milliseconds
+     * @param cancelled      tells whether clients should stop sending queries
+     * @param failedQueries  counter of measured queries which haven't been answered
+     * @param corpus         arrays to send, must contain arrays of array size
+     * @param trial          measurements of answered queries
+     * @param startTime      set to the time measured queries start once every client has finished its warmup
+     */
+    @Builder
+    private MultiplexedClients(@NotNull String host, int port, int numberOfClients, int numberOfQueries,
+                               int queriesDelay, int arraySize, int arrivalRate, int pipelineDepth,
+                               @NotNull SortAlgorithm sortAlgorithm, @NotNull WireFormat wireFormat,
+                               int warmupQueries, int warmupDuration, @NotNull BooleanSupplier cancelled,
+                               @NotNull AtomicInteger failedQueries, @NotNull Corpus corpus, @NotNull Trial trial,
+                               @NotNull AtomicLong startTime) {
+        address = new InetSocketAddress(host, port);
+        this.numberOfClients = numberOfClients;
+        this.numberOfQueries = numberOfQueries;
+        this.queriesDelay = TimeUnit.MILLISECONDS.toNanos(queriesDelay);
+        this.arraySize = arraySize;
+        this.pipelineDepth = pipelineDepth;
+        openLoop = arrivalRate > 0;
+        interval = openLoop ? TimeUnit.SECONDS.toNanos(numberOfClients) / arrivalRate : 0;
+        this.warmupQueries = warmupQueries;
+        this.warmupDuration = TimeUnit.MILLISECONDS.toNanos(warmupDuration);
+        handshake = new Handshake(sortAlgorithm, wireFormat, VERSION);
+        codec = wireFormat.getCodec();
+        this.cancelled = cancelled;
+        this.failedQueries = failedQueries;
+        this.corpus = corpus;
+        this.trial = trial;
+        this.startTime = startTime;
+        warmingUp = new AtomicInteger(numberOfClients);
+    }
+
+    /**
+     * Connects all clients and returns once every measured query is answered or failed.
+     */
+    void run() throws IOException, InterruptedException {
+        selectorThreads = new SelectorThread[Math.min(MAX_SELECTOR_THREADS, numberOfClients)];
+        for (int i = 0; i < selectorThreads.length; i++) {
+            selectorThreads[i] = new SelectorThread();
+        }
+        try {
+            for (int i = 0; i < numberOfClients; i++) {
+                selectorThreads[i % selectorThreads.length].add(connect(i));
+            }
+        } catch (IOException exception) {
+            for (SelectorThread selectorThread : selectorThreads) {
+                selectorThread.closeAll();
+            }
+            throw exception;
+        }
+
+        Thread[] threads = new Thread[selectorThreads.length];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(selectorThreads[i]);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    @NotNull
+    private Connection connect(int index) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            handshake.write(out);
+            out.flush();
+            channel.configureBlocking(false);
+        } catch (IOException exception) {
+            channel.close();
+            throw exception;
+        }
+        return new Connection(index, channel);
+    }
+
+    /**
+     * Called by the client which finished its warmup last.
+     */
+    private void startMeasurement() {
+        startTime.set(System.nanoTime());
+        for (SelectorThread selectorThread : selectorThreads) {
+            selectorThread.selector.wakeup();
+        }
+    }
+
+    /**
+     * Thread serving its own share of connections. Connections are touched by their thread only.
+     */
+    private class SelectorThread implements Runnable {
+        private final Selector selector;
+        private final List<Connection> connections = new ArrayList<>();
+        private final PriorityQueue<Connection> timers =
+                new PriorityQueue<>(Comparator.comparingLong(connection -> connection.nextSendTime));
+        private int active = 0;
+        private boolean started = false;
+
+        private SelectorThread() throws IOException {
+            selector = Selector.open();
+        }
+
+        private void add(@NotNull Connection connection) throws IOException {
+            connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+            connection.selectorThread = this;
+            connections.add(connection);
+            active++;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long now = System.nanoTime();
+                for (Connection connection : connections) {
+                    try {
+                        connection.startWarmup(now);
+                    } catch (IOException exception) {
+                        connection.fail();
+                    }
+                }
+
+                while (active > 0) {
+                    if (!started && startTime.get() != 0) {
+                        started = true;
+                        for (Connection connection : connections) {
+                            connection.startQueries(startTime.get());
+                        }
+                    }
+
+                    long wait = runTimers();
+                    if (wait < 0) {
+                        selector.select();
+                    } else if (wait < NANOS_PER_MILLI) {
+                        selector.selectNow();
+                    } else {
+                        selector.select(wait / NANOS_PER_MILLI);
+                    }
+
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException exception) {
+                            connection.fail();
+                        }
+                    }
+                }
+            } catch (IOException exception) {
+                for (Connection connection : connections) {
+                    connection.fail();
+                }
+            } finally {
+                closeAll();
+            }
+        }
+
+        /**
+         * Sends requests which are due.
+         *
+         * @return nanoseconds until the next request is due, -1 if none is scheduled
+         */
+        private long runTimers() {
+            long now = System.nanoTime();
+            Connection connection;
+            while ((connection = timers.peek()) != null && connection.nextSendTime <= now) {
+                timers.remove();
+                try {
+                    connection.onTimer(now);
+                } catch (IOException exception) {
+                    connection.fail();
+                }
+            }
+            return connection == null ? -1 : connection.nextSendTime - now;
+        }
+
+        private void closeAll() {
+            for (Connection connection : connections) {
+                try {
+                    connection.channel.close();
+                } catch (IOException ignored) {
+                    //nothing to do
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+    }
+
+    private enum State {
+        WARMUP, WAITING, MEASUREMENT, DONE
+    }
+
+    /**
+     * Single simulated client.
+     */
+    private class Connection {
+        private final int index;
+        private final SocketChannel channel;
+        private final Queue<PendingQuery> pendingQueries = new ArrayDeque<>();
+        private final Queue<ByteBuffer> output = new ArrayDeque<>();
+        private final ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE);
+        private SelectorThread selectorThread;
+        private SelectionKey key;
+        private State state = State.WARMUP;
+        @Nullable
+        private ResponseHeader header = null;
+        @Nullable
+        private ByteBuffer payload = null;
+        private int warmupsSent = 0;
+        private long warmupEnd;
+        private long firstSendTime;
+        private long nextSendTime;
+        private int sent = 0;
+        private int measuredInFlight = 0;
+        private boolean stopped = false;
+        private boolean blocked = false;
+
+        private Connection(int index, @NotNull SocketChannel channel) {
+            this.index = index;
+            this.channel = channel;
+        }
+
+        private void startWarmup(long now) throws IOException {
+            warmupEnd = now + warmupDuration;
+            continueWarmup(now);
+        }
+
+        /**
+         * Sends next warmup query one at a time until both warmup query count and warmup duration are reached.
+         */
+        private void continueWarmup(long now) throws IOException {
+            if ((warmupsSent < warmupQueries || now < warmupEnd) && !cancelled.getAsBoolean()) {
+                send(false, 0, nextArray(warmupsSent++));
+                return;
+            }
+            finishWarmup();
+        }
+
+        private void finishWarmup() {
+            state = State.WAITING;
+            if (warmingUp.decrementAndGet() == 0) {
+                startMeasurement();
+            }
+        }
+
+        private void startQueries(long startTime) {
+            if (state != State.WAITING) {
+                return;
+            }
+            state = State.MEASUREMENT;
+            //clients are shifted against each other so that requests arrive evenly
+            firstSendTime = startTime + interval * index / numberOfClients;
+            schedule(firstSendTime);
+        }
+
+        private void schedule(long time) {
+            nextSendTime = time;
+            selectorThread.timers.add(this);
+        }
+
+        private void onTimer(long now) throws IOException {
+            if (state != State.MEASUREMENT) {
+                return;
+            }
+            if (cancelled.getAsBoolean()) {
+                stopped = true;
+                closeIfFinished();
+                return;
+            }
+            if (!openLoop && pendingQueries.size() >= pipelineDepth) {
+                blocked = true;
+                return;
+            }
+
+            send(true, nextSendTime, nextArray(sent++));
+            if (sent < numberOfQueries) {
+                if (openLoop) {
+                    schedule(firstSendTime + sent * interval);
+                } else if (pipelineDepth > 1) {
+                    schedule(now + queriesDelay);
+                }
+            }
+        }
+
+        /**
+         * Returns array query number of this client sends, clients take turns in going through the corpus.
+         */
+        @NotNull
+        private IntBuffer nextArray(int query) {
+            return corpus.get(arraySize, (long) query * numberOfClients + index);
+        }
+
+        /**
+         * @param dueTime time request was due to be sent in open-loop mode
+         */
+        private void send(boolean measured, long dueTime, @NotNull IntBuffer array) throws IOException {
+            long sendTime = measured && openLoop ? dueTime : System.nanoTime();
+            ByteBuffer serialized = codec.encode(array);
+            ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + serialized.remaining());
+            request.putInt(serialized.remaining()).put(serialized).flip();
+
+            pendingQueries.add(new PendingQuery(sendTime, request.remaining(), measured));
+            if (measured) {
+                measuredInFlight++;
+            }
+            output.add(request);
+            flush();
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = output.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+                output.remove();
+            }
+            int interestOps = output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+            if (key.interestOps() != interestOps) {
+                key.interestOps(interestOps);
+            }
+        }
+
+        private void read() throws IOException {
+            while (state != State.DONE) {
+                if (header == null) {
+                    if (channel.read(headerBuffer) == -1) {
+                        throw new EOFException();
+                    }
+                    if (headerBuffer.hasRemaining()) {
+                        return;
+                    }
+                    headerBuffer.flip();
+                    header = ResponseHeader.read(headerBuffer, VERSION);
+                    headerBuffer.clear();
+                    if (header.isRejected()) {
+                        onResponse(header, null);
+                        continue;
+                    }
+                    if (header.getPayloadSize() < 0) {
+                        throw new ProtocolException("Negative payload size: " + header.getPayloadSize());
+                    }
+                    payload = ByteBuffer.allocate(header.getPayloadSize());
+                }
+
+                if (channel.read(payload) == -1) {
+                    throw new EOFException();
+                }
+                if (payload.hasRemaining()) {
+                    return;
+                }
+                payload.flip();
+                onResponse(header, payload);
+            }
+        }
+
+        /**
+         * @param payload null if request was rejected
+         */
+        private void onResponse(@NotNull ResponseHeader header, @Nullable ByteBuffer payload) throws IOException {
+            this.header = null;
+            this.payload = null;
+            PendingQuery query = pendingQueries.poll();
+            if (query == null) {
+                throw new ProtocolException("Response to no request");
+            }
+            if (!query.measured) {
+                continueWarmup(System.nanoTime());
+                return;
+            }
+
+            measuredInFlight--;
+            if (payload == null) {
+                failedQueries.incrementAndGet();
+            } else {
+                SortResponse response = new SortResponse(codec.decode(payload), header.getProcessingTime(),
+                        header.getSortTime(), header.getStageTimings(), query.sentBytes,
+                        HEADER_SIZE + payload.limit());
+                trial.addAnswer(System.nanoTime() - query.sendTime, response);
+            }
+
+            if (!openLoop && sent < numberOfQueries) {
+                if (pipelineDepth == 1) {
+                    schedule(System.nanoTime() + queriesDelay);
+                } else if (blocked) {
+                    blocked = false;
+                    schedule(System.nanoTime());
+                }
+            }
+            closeIfFinished();
+        }
+
+        private void closeIfFinished() {
+            if (pendingQueries.isEmpty() && (sent == numberOfQueries || stopped)) {
+                close();
+            }
+        }
+
+        /**
+         * Counts measured queries which won't be answered as failed and closes connection.
+         */
+        private void fail() {
+            if (state == State.DONE) {
+                return;
+            }
+            if (state == State.WARMUP) {
+                finishWarmup();
+            }
+            failedQueries.addAndGet(measuredInFlight + (stopped ? 0 : numberOfQueries - sent));
+            close();
+        }
+
+        private void close() {
+            state = State.DONE;
+            selectorThread.active--;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+    }
+
+    /**
+     * Request waiting for response. Server answers requests of a connection in the order they were sent.
+     */
+    private static class PendingQuery {
+        private final long sendTime;
+        private final long sentBytes;
+        private final boolean measured;
+
+        private PendingQuery(long sendTime, long sentBytes, boolean measured) {
+            this.sendTime = sendTime;
+            this.sentBytes = sentBytes;
+            this.measured = measured;
+        }
+    }
+}
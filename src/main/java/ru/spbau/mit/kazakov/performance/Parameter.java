@@ -23,5 +23,26 @@ public enum Parameter {
         public String toString() {
             return "Array size";
         }
+    },
+    ARRIVAL_RATE {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Arrival rate";
+        }
+    },
+    WORKER_THREADS {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Worker threads";
+        }
+    },
+    IO_THREADS {
+        @Override
+        @NotNull
+        public String toString() {
+            return "I/O threads";
+        }
     }
 }
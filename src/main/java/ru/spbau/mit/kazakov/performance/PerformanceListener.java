@@ -0,0 +1,23 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Observes running test. Methods should return quickly. {@link #stepCompleted} is called from tester's thread,
+ * {@link #progress} from a separate sampling thread, so listeners sharing state between them must synchronize.
+ */
+public interface PerformanceListener {
+    /**
+     * Called once every trial of a step has finished.
+     *
+     * @param result points of all steps finished so far
+     */
+    default void stepCompleted(@NotNull PerformanceTestResult result) {
+    }
+
+    /**
+     * Called about once a second from a sampling thread while measured queries of a trial are in flight.
+     */
+    default void progress(@NotNull ProgressSample sample) {
+    }
+}
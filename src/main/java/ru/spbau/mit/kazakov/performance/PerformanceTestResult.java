@@ -3,6 +3,10 @@ package ru.spbau.mit.kazakov.performance;
 import lombok.Builder;
 import lombok.Singular;
 import lombok.Value;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.server.OverloadPolicy;
+import ru.spbau.mit.kazakov.server.ServerMetricsSnapshot;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
 
 import java.util.List;
 
@@ -10,6 +14,22 @@ import java.util.List;
 @Builder
 public class PerformanceTestResult {
     private ServerArchitecture architecture;
+    private SortAlgorithm sortAlgorithm;
+    private WireFormat wireFormat;
+    private int pipelineDepth;
+    private int arrivalRate;
+    private int warmupQueries;
+    private int warmupDuration;
+    private int trials;
+    private int workerThreads;
+    private int ioThreads;
+    private int queueCapacity;
+    private OverloadPolicy overloadPolicy;
+    private int cacheCapacity;
+    private LoadGenerator loadGenerator;
+    private Distribution distribution;
+    private long corpusSeed;
+    private int corpusArrays;
     private Parameter parameter;
     private int maxValue;
     private int queriesNumber;
@@ -23,15 +43,65 @@ public class PerformanceTestResult {
     private List<Double> sortTime;
     @Singular("clientProcessingTime")
     private List<Double> clientProcessingTime;
+    @Singular("requestBytes")
+    private List<Double> requestBytes;
+    @Singular("responseBytes")
+    private List<Double> responseBytes;
+    @Singular("answerTimePercentiles")
+    private List<LatencyPercentiles> answerTimePercentiles;
+    @Singular("clientProcessingTimePercentiles")
+    private List<LatencyPercentiles> clientProcessingTimePercentiles;
+    @Singular("sortTimePercentiles")
+    private List<LatencyPercentiles> sortTimePercentiles;
+    /**
+     * Wall-clock time of each step in milliseconds.
+     */
+    @Singular("duration")
+    private List<Double> duration;
+    /**
+     * Completed queries per second.
+     */
+    @Singular("throughput")
+    private List<Double> throughput;
+    @Singular("requestBytesPerSecond")
+    private List<Double> requestBytesPerSecond;
+    @Singular("responseBytesPerSecond")
+    private List<Double> responseBytesPerSecond;
+    @Singular("answerTimeStatistics")
+    private List<TrialStatistics> answerTimeStatistics;
+    @Singular("clientProcessingTimeStatistics")
+    private List<TrialStatistics> clientProcessingTimeStatistics;
+    @Singular("sortTimeStatistics")
+    private List<TrialStatistics> sortTimeStatistics;
+    @Singular("throughputStatistics")
+    private List<TrialStatistics> throughputStatistics;
+    /**
+     * Server's counters at the end of each step, null where they couldn't be obtained.
+     */
+    @Singular("serverMetrics")
+    private List<ServerMetricsSnapshot> serverMetrics;
+    @Singular("stageBreakdown")
+    private List<StageBreakdown> stageBreakdown;
     private int failedQueries;
+    /**
+     * True if test was cancelled before reaching max value, points cover finished steps only.
+     */
+    private boolean cancelled;
 
     public int getInitValue() {
-        if (parameter.equals(Parameter.ARRAY_SIZE)) {
-            return arraySize;
-        } else if (parameter.equals(Parameter.CLIENTS_NUMBER)) {
-            return clientsNumber;
-        } else {
-            return queriesDelay;
+        switch (parameter) {
+            case ARRAY_SIZE:
+                return arraySize;
+            case CLIENTS_NUMBER:
+                return clientsNumber;
+            case ARRIVAL_RATE:
+                return arrivalRate;
+            case WORKER_THREADS:
+                return workerThreads;
+            case IO_THREADS:
+                return ioThreads;
+            default:
+                return queriesDelay;
         }
     }
 }
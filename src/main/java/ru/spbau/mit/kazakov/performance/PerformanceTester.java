@@ -1,29 +1,96 @@
 package ru.spbau.mit.kazakov.performance;
 
-import org.apache.commons.lang3.time.StopWatch;
+import org.HdrHistogram.Histogram;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import ru.spbau.mit.kazakov.Client;
 import ru.spbau.mit.kazakov.ConnectionException;
+import ru.spbau.mit.kazakov.RequestRejectedException;
+import ru.spbau.mit.kazakov.SortResponse;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.server.MetricsEndpoint;
+import ru.spbau.mit.kazakov.server.OverloadPolicy;
+import ru.spbau.mit.kazakov.server.Server;
+import ru.spbau.mit.kazakov.server.ServerConfig;
+import ru.spbau.mit.kazakov.server.ServerMetricsSnapshot;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ObjIntConsumer;
 
 
 public class PerformanceTester {
+    public static final Path DEFAULT_CORPUS_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "sort-corpus");
+    public static final int DEFAULT_CORPUS_ARRAYS = 1024;
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final ProcessingStage[] STAGES = ProcessingStage.values();
     private int queriesNumber;
     private int queriesDelay;
     private int clientsNumber;
     private int arraySize;
+    private SortAlgorithm sortAlgorithm = SortAlgorithm.BUBBLE;
+    private WireFormat wireFormat = WireFormat.PROTOBUF;
+    private int pipelineDepth = 1;
+    private int arrivalRate = 0;
+    private int warmupQueries = 0;
+    private int warmupDuration = 0;
+    private int trials = 1;
+    private ServerTargets targets = new ServerTargets();
+    private int workerThreads = ServerConfig.DEFAULT_WORKER_THREADS;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = ServerConfig.UNBOUNDED;
+    private OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+    private int cacheCapacity = 0;
+    private LoadGenerator loadGenerator = LoadGenerator.THREADS;
+    private Distribution distribution = Distribution.UNIFORM;
+    private Path corpusDirectory = DEFAULT_CORPUS_DIRECTORY;
+    private long corpusSeed = 0;
+    private int corpusArrays = DEFAULT_CORPUS_ARRAYS;
+    private Corpus corpus;
     private AtomicInteger failedQueries = new AtomicInteger(0);
+    private final List<PerformanceListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean cancelled = false;
 
     private final List<Double> sortTime = new ArrayList<>();
     private final List<Double> answerTime = new ArrayList<>();
     private final List<Double> clientProcessingTime = new ArrayList<>();
+    private final List<Double> requestBytes = new ArrayList<>();
+    private final List<Double> responseBytes = new ArrayList<>();
+    private final List<LatencyPercentiles> answerTimePercentiles = new ArrayList<>();
+    private final List<LatencyPercentiles> clientProcessingTimePercentiles = new ArrayList<>();
+    private final List<LatencyPercentiles> sortTimePercentiles = new ArrayList<>();
+    private final List<Double> duration = new ArrayList<>();
+    private final List<Double> throughput = new ArrayList<>();
+    private final List<Double> requestBytesPerSecond = new ArrayList<>();
+    private final List<Double> responseBytesPerSecond = new ArrayList<>();
+    private final List<TrialStatistics> answerTimeStatistics = new ArrayList<>();
+    private final List<TrialStatistics> clientProcessingTimeStatistics = new ArrayList<>();
+    private final List<TrialStatistics> sortTimeStatistics = new ArrayList<>();
+    private final List<TrialStatistics> throughputStatistics = new ArrayList<>();
+    private final List<ServerMetricsSnapshot> serverMetrics = new ArrayList<>();
+    private final List<StageBreakdown> stageBreakdown = new ArrayList<>();
 
     public PerformanceTester(int numberOfQueries, int queriesDelay, int numberOfClients, int arraySize) {
         setQueriesNumber(numberOfQueries);
@@ -32,6 +99,62 @@ public class PerformanceTester {
         setArraySize(arraySize);
     }
 
+    /**
+     * Runs test varying specified parameter from its current value up to max value.
+     */
+    @NotNull
+    public PerformanceTestResult test(@NotNull Parameter parameter, @NotNull ServerArchitecture architecture,
+                                      int step, int maxValue) throws ConnectionException {
+        switch (parameter) {
+            case CLIENTS_NUMBER:
+                return testForClientsNumber(architecture, step, maxValue);
+            case QUERIES_DELAY:
+                return testForQueriesDelay(architecture, step, maxValue);
+            case ARRIVAL_RATE:
+                return testForArrivalRate(architecture, step, maxValue);
+            case WORKER_THREADS:
+                return testForWorkerThreads(architecture, step, maxValue);
+            case IO_THREADS:
+                return testForIoThreads(architecture, step, maxValue);
+            default:
+                return testForArraySize(architecture, step, maxValue);
+        }
+    }
+
+    /**
+     * Runs {@link #test} on specified executor. Future fails with {@link ConnectionException} if the test does.
+     */
+    @NotNull
+    public CompletableFuture<PerformanceTestResult> testAsync(@NotNull Parameter parameter,
+                                                              @NotNull ServerArchitecture architecture, int step,
+                                                              int maxValue, @NotNull Executor executor) {
+        CompletableFuture<PerformanceTestResult> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(test(parameter, architecture, step, maxValue));
+            } catch (Exception exception) {
+                result.completeExceptionally(exception);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Makes running test stop sending queries and return points of the steps finished so far.
+     * The step being run is discarded.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public void addListener(@NotNull PerformanceListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(@NotNull PerformanceListener listener) {
+        listeners.remove(listener);
+    }
+
     @NotNull
     public PerformanceTestResult testForQueriesDelay(@NotNull ServerArchitecture architecture, int step,
                                                      int maxDelay) throws ConnectionException {
@@ -41,8 +164,14 @@ public class PerformanceTester {
         clear();
 
         try {
+            openCorpus(arraySize, 1, arraySize);
             for (int delay = queriesDelay; delay <= maxDelay; delay += step) {
-                runClients(architecture.getHost(), architecture.getPort(), clientsNumber, queriesNumber, delay, arraySize);
+                if (!runStep(targets.getHost(architecture), targets.getPort(architecture), clientsNumber,
+                        queriesNumber, delay, arraySize, arrivalRate)) {
+                    break;
+                }
+                serverMetrics.add(scrapeMetrics(architecture));
+                notifyStepCompleted(Parameter.QUERIES_DELAY, step, maxDelay, architecture);
             }
         } catch (Exception exception) {
             throw new ConnectionException();
@@ -60,8 +189,14 @@ public class PerformanceTester {
         clear();
 
         try {
+            openCorpus(arraySize, 1, arraySize);
             for (int clients = clientsNumber; clients <= maxNumberOfClients; clients += step) {
-                runClients(architecture.getHost(), architecture.getPort(), clients, queriesNumber, queriesDelay, arraySize);
+                if (!runStep(targets.getHost(architecture), targets.getPort(architecture), clients,
+                        queriesNumber, queriesDelay, arraySize, arrivalRate)) {
+                    break;
+                }
+                serverMetrics.add(scrapeMetrics(architecture));
+                notifyStepCompleted(Parameter.CLIENTS_NUMBER, step, maxNumberOfClients, architecture);
             }
         } catch (Exception exception) {
             throw new ConnectionException();
@@ -79,8 +214,14 @@ public class PerformanceTester {
         clear();
 
         try {
+            openCorpus(arraySize, step, maxSize);
             for (int size = arraySize; size <= maxSize; size += step) {
-                runClients(architecture.getHost(), architecture.getPort(), clientsNumber, queriesNumber, queriesDelay, size);
+                if (!runStep(targets.getHost(architecture), targets.getPort(architecture), clientsNumber,
+                        queriesNumber, queriesDelay, size, arrivalRate)) {
+                    break;
+                }
+                serverMetrics.add(scrapeMetrics(architecture));
+                notifyStepCompleted(Parameter.ARRAY_SIZE, step, maxSize, architecture);
             }
         } catch (Exception exception) {
             throw new ConnectionException();
@@ -89,6 +230,88 @@ public class PerformanceTester {
         return buildTestResult(Parameter.ARRAY_SIZE, step, maxSize, architecture);
     }
 
+    /**
+     * Runs open-loop test for each arrival rate, initial rate must be set and positive.
+     */
+    @NotNull
+    public PerformanceTestResult testForArrivalRate(@NotNull ServerArchitecture architecture, int step,
+                                                    int maxRate) throws ConnectionException {
+        if (arrivalRate == 0 || maxRate < arrivalRate) {
+            throw new IllegalArgumentException();
+        }
+        clear();
+
+        try {
+            openCorpus(arraySize, 1, arraySize);
+            for (int rate = arrivalRate; rate <= maxRate; rate += step) {
+                if (!runStep(targets.getHost(architecture), targets.getPort(architecture), clientsNumber,
+                        queriesNumber, queriesDelay, arraySize, rate)) {
+                    break;
+                }
+                serverMetrics.add(scrapeMetrics(architecture));
+                notifyStepCompleted(Parameter.ARRIVAL_RATE, step, maxRate, architecture);
+            }
+        } catch (Exception exception) {
+            throw new ConnectionException();
+        }
+
+        return buildTestResult(Parameter.ARRIVAL_RATE, step, maxRate, architecture);
+    }
+
+    /**
+     * Starts in-process server of the architecture with each number of worker threads.
+     * Server listens to architecture's port of targets on localhost, targets' host is ignored.
+     */
+    @NotNull
+    public PerformanceTestResult testForWorkerThreads(@NotNull ServerArchitecture architecture, int step,
+                                                      int maxThreads) throws ConnectionException {
+        if (maxThreads < workerThreads) {
+            throw new IllegalArgumentException();
+        }
+        clear();
+
+        try {
+            openCorpus(arraySize, 1, arraySize);
+            for (int threads = workerThreads; threads <= maxThreads; threads += step) {
+                if (!runWithServer(architecture, threads, ioThreads)) {
+                    break;
+                }
+                notifyStepCompleted(Parameter.WORKER_THREADS, step, maxThreads, architecture);
+            }
+        } catch (Exception exception) {
+            throw new ConnectionException();
+        }
+
+        return buildTestResult(Parameter.WORKER_THREADS, step, maxThreads, architecture);
+    }
+
+    /**
+     * Starts in-process server of the architecture with each number of I/O threads.
+     * Server listens to architecture's port of targets on localhost, targets' host is ignored.
+     */
+    @NotNull
+    public PerformanceTestResult testForIoThreads(@NotNull ServerArchitecture architecture, int step,
+                                                  int maxThreads) throws ConnectionException {
+        if (maxThreads < ioThreads) {
+            throw new IllegalArgumentException();
+        }
+        clear();
+
+        try {
+            openCorpus(arraySize, 1, arraySize);
+            for (int threads = ioThreads; threads <= maxThreads; threads += step) {
+                if (!runWithServer(architecture, workerThreads, threads)) {
+                    break;
+                }
+                notifyStepCompleted(Parameter.IO_THREADS, step, maxThreads, architecture);
+            }
+        } catch (Exception exception) {
+            throw new ConnectionException();
+        }
+
+        return buildTestResult(Parameter.IO_THREADS, step, maxThreads, architecture);
+    }
+
     public void setQueriesNumber(int queriesNumber) {
         if (queriesNumber <= 0) {
             throw new IllegalArgumentException();
@@ -117,44 +340,420 @@ public class PerformanceTester {
         this.arraySize = arraySize;
     }
 
-    private void runClients(@NotNull String host, int port, int numberOfClients, int numberOfQueries,
-                            int queriesDelay, int arraySize) throws IOException, InterruptedException {
-        List<Double> sortTimes = new ArrayList<>();
-        List<Double> answerTimes = new ArrayList<>();
-        List<Double> clientProcessingTimes = new ArrayList<>();
-        Consumer<Client> clientQueries = (Client client) -> {
-            StopWatch answerTime = new StopWatch();
-            answerTime.start();
-            long sortTime = 0;
-            long clientProcessingTime = 0;
+    public void setSortAlgorithm(@NotNull SortAlgorithm sortAlgorithm) {
+        this.sortAlgorithm = sortAlgorithm;
+    }
+
+    public void setWireFormat(@NotNull WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+    }
+
+    /**
+     * Switches tester to open-loop mode: clients send requests at specified total rate per second
+     * regardless of responses, answer time is measured from the moment request was due to be sent.
+     * Requests aren't limited by pipeline depth and queries delay is ignored. 0 returns to closed-loop mode
+     * where each client waits for the response and then sleeps queries delay.
+     */
+    public void setArrivalRate(int arrivalRate) {
+        if (arrivalRate < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.arrivalRate = arrivalRate;
+    }
+
+    /**
+     * Sets number of queries each client sends before every trial. Their results are discarded.
+     */
+    public void setWarmupQueries(int warmupQueries) {
+        if (warmupQueries < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.warmupQueries = warmupQueries;
+    }
+
+    /**
+     * Sets time in milliseconds clients keep sending discarded queries before every trial.
+     */
+    public void setWarmupDuration(int warmupDuration) {
+        if (warmupDuration < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.warmupDuration = warmupDuration;
+    }
+
+    /**
+     * Sets number of times each step is repeated. Points of the result summarize all trials.
+     */
+    public void setTrials(int trials) {
+        if (trials <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.trials = trials;
+    }
+
+    /**
+     * Sets size of worker pool of in-process servers started by thread count tests.
+     */
+    public void setWorkerThreads(int workerThreads) {
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.workerThreads = workerThreads;
+    }
+
+    /**
+     * Sets number of I/O threads of in-process servers started by thread count tests.
+     */
+    public void setIoThreads(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Sets capacity of sort task queue of in-process servers started by thread count tests,
+     * {@link ServerConfig#UNBOUNDED} for unbounded queue.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets what in-process servers started by thread count tests do when their queue is full.
+     * Rejected requests are counted as failed queries.
+     */
+    public void setOverloadPolicy(@NotNull OverloadPolicy overloadPolicy) {
+        this.overloadPolicy = overloadPolicy;
+    }
+
+    /**
+     * Sets memory budget in bytes of result cache of in-process servers started by thread count tests,
+     * 0 disables the cache.
+     */
+    public void setCacheCapacity(int cacheCapacity) {
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.cacheCapacity = cacheCapacity;
+    }
+
+    /**
+     * Sets how simulated clients are driven. {@link LoadGenerator#MULTIPLEXED} is needed for thousands of clients.
+     */
+    public void setLoadGenerator(@NotNull LoadGenerator loadGenerator) {
+        this.loadGenerator = loadGenerator;
+    }
+
+    /**
+     * Sets how values of arrays sent by clients are distributed.
+     */
+    public void setDistribution(@NotNull Distribution distribution) {
+        this.distribution = distribution;
+    }
+
+    /**
+     * Sets directory where files of input corpus are kept. Files are reused by subsequent tests,
+     * so that every architecture gets the same arrays.
+     */
+    public void setCorpusDirectory(@NotNull Path corpusDirectory) {
+        this.corpusDirectory = corpusDirectory;
+    }
+
+    /**
+     * Sets seed arrays of input corpus are generated from.
+     */
+    public void setCorpusSeed(long corpusSeed) {
+        this.corpusSeed = corpusSeed;
+    }
+
+    /**
+     * Sets number of distinct arrays of each size in input corpus. Clients cycle through them.
+     */
+    public void setCorpusArrays(int corpusArrays) {
+        if (corpusArrays <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.corpusArrays = corpusArrays;
+    }
+
+    /**
+     * Sets addresses clients connect to.
+     */
+    public void setTargets(@NotNull ServerTargets targets) {
+        this.targets = targets;
+    }
+
+    /**
+     * Sets maximum number of requests each client keeps in flight. With depth greater than 1
+     * clients send next requests without waiting for responses.
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * @return false if test has been cancelled
+     */
+    private boolean runWithServer(@NotNull ServerArchitecture architecture, int workerThreads,
+                                  int ioThreads) throws IOException, InterruptedException {
+        int port = targets.getPort(architecture);
+        Server server = architecture.createServer(ServerConfig.builder()
+                .port(port)
+                .workerThreads(workerThreads)
+                .ioThreads(ioThreads)
+                .queueCapacity(queueCapacity)
+                .overloadPolicy(overloadPolicy)
+                .cacheCapacity(cacheCapacity)
+                .build());
+        Thread serverThread = new Thread(server::start);
+        serverThread.start();
+
+        try {
+            if (!runStep(ServerTargets.DEFAULT_HOST, port, clientsNumber, queriesNumber, queriesDelay, arraySize,
+                    arrivalRate)) {
+                return false;
+            }
+            serverMetrics.add(server.getMetrics().snapshot());
+            return true;
+        } finally {
+            server.close();
+            serverThread.join();
+        }
+    }
+
+    /**
+     * Maps arrays of every size from specified one up to max size, generating missing ones.
+     */
+    private void openCorpus(int initSize, int step, int maxSize) throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        for (int size = initSize; size <= maxSize; size += step) {
+            sizes.add(size);
+        }
+        corpus = Corpus.open(corpusDirectory, distribution, corpusSeed, corpusArrays, sizes);
+    }
+
+    private void notifyStepCompleted(@NotNull Parameter parameter, int step, int maxValue,
+                                     @NotNull ServerArchitecture architecture) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        PerformanceTestResult result = buildTestResult(parameter, step, maxValue, architecture);
+        for (PerformanceListener listener : listeners) {
+            listener.stepCompleted(result);
+        }
+    }
+
+    /**
+     * Fetches metrics of architecture's server from its endpoint.
+     *
+     * @return null if metrics port of the architecture isn't configured or endpoint is unavailable
+     */
+    @Nullable
+    private ServerMetricsSnapshot scrapeMetrics(@NotNull ServerArchitecture architecture) {
+        int port = targets.getMetricsPort(architecture);
+        if (port == 0) {
+            return null;
+        }
+
+        try (InputStream in = new URI("http", null, targets.getHost(architecture), port, MetricsEndpoint.PATH,
+                null, null).toURL().openStream()) {
+            return ServerMetricsSnapshot.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException | URISyntaxException exception) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs all trials of a single step and records their summary.
+     *
+     * @param arrivalRate total number of requests per second sent by clients in open-loop mode,
+     *                    0 for closed-loop mode
+     * @return false if test has been cancelled, nothing is recorded then
+     */
+    private boolean runStep(@NotNull String host, int port, int numberOfClients, int numberOfQueries,
+                         int queriesDelay, int arraySize, int arrivalRate) throws IOException, InterruptedException {
+        Histogram answerTimes = new Histogram(SIGNIFICANT_DIGITS);
+        Histogram clientProcessingTimes = new Histogram(SIGNIFICANT_DIGITS);
+        Histogram sortTimes = new Histogram(SIGNIFICANT_DIGITS);
+        long sentBytes = 0;
+        long receivedBytes = 0;
+        double totalDuration = 0;
+        double[] trialAnswerTimes = new double[trials];
+        double[] trialClientProcessingTimes = new double[trials];
+        double[] trialSortTimes = new double[trials];
+        double[] trialThroughputs = new double[trials];
+        long[] stageTimes = new long[STAGES.length];
+        long timedResponses = 0;
+
+        for (int i = 0; i < trials; i++) {
+            Trial trial = runTrial(host, port, numberOfClients, numberOfQueries, queriesDelay, arraySize, arrivalRate,
+                    i);
+            if (cancelled) {
+                return false;
+            }
+            answerTimes.add(trial.answerTimes);
+            clientProcessingTimes.add(trial.clientProcessingTimes);
+            sortTimes.add(trial.sortTimes);
+            sentBytes += trial.requestsBytes.sum();
+            receivedBytes += trial.responsesBytes.sum();
+            totalDuration += trial.duration;
+            for (ProcessingStage stage : STAGES) {
+                stageTimes[stage.ordinal()] += trial.stageTimes[stage.ordinal()].sum();
+            }
+            timedResponses += trial.timedResponses.sum();
+            trialAnswerTimes[i] = meanMillis(trial.answerTimes);
+            trialClientProcessingTimes[i] = meanMillis(trial.clientProcessingTimes);
+            trialSortTimes[i] = meanMillis(trial.sortTimes);
+            trialThroughputs[i] = trial.answerTimes.getTotalCount() / trial.duration;
+        }
+
+        long answered = answerTimes.getTotalCount();
+        answerTime.add(meanMillis(answerTimes));
+        clientProcessingTime.add(meanMillis(clientProcessingTimes));
+        sortTime.add(meanMillis(sortTimes));
+        requestBytes.add(answered == 0 ? 0 : sentBytes / (double) answered);
+        responseBytes.add(answered == 0 ? 0 : receivedBytes / (double) answered);
+        answerTimePercentiles.add(LatencyPercentiles.of(answerTimes));
+        clientProcessingTimePercentiles.add(LatencyPercentiles.of(clientProcessingTimes));
+        sortTimePercentiles.add(LatencyPercentiles.of(sortTimes));
+        duration.add(totalDuration / trials * TimeUnit.SECONDS.toMillis(1));
+        throughput.add(answered / totalDuration);
+        requestBytesPerSecond.add(sentBytes / totalDuration);
+        responseBytesPerSecond.add(receivedBytes / totalDuration);
+        answerTimeStatistics.add(TrialStatistics.of(trialAnswerTimes));
+        clientProcessingTimeStatistics.add(TrialStatistics.of(trialClientProcessingTimes));
+        sortTimeStatistics.add(TrialStatistics.of(trialSortTimes));
+        throughputStatistics.add(TrialStatistics.of(trialThroughputs));
+        stageBreakdown.add(StageBreakdown.of(stageTimes, timedResponses));
+        return true;
+    }
+
+    /**
+     * Connects clients, warms them up and runs measured queries. Measurement starts once every client
+     * has finished its warmup. Listeners get a progress sample every second of measurement.
+     */
+    @NotNull
+    private Trial runTrial(@NotNull String host, int port, int numberOfClients, int numberOfQueries,
+                           int queriesDelay, int arraySize, int arrivalRate,
+                           int trialIndex) throws IOException, InterruptedException {
+        Trial trial = new Trial();
+        AtomicLong startTime = new AtomicLong();
+        int stepIndex = answerTime.size();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> publishProgress(trial, stepIndex, trialIndex, startTime.get()),
+                1, 1, TimeUnit.SECONDS);
+        try {
+            if (loadGenerator == LoadGenerator.MULTIPLEXED) {
+                MultiplexedClients.builder()
+                        .host(host)
+                        .port(port)
+                        .numberOfClients(numberOfClients)
+                        .numberOfQueries(numberOfQueries)
+                        .queriesDelay(queriesDelay)
+                        .arraySize(arraySize)
+                        .arrivalRate(arrivalRate)
+                        .pipelineDepth(pipelineDepth)
+                        .sortAlgorithm(sortAlgorithm)
+                        .wireFormat(wireFormat)
+                        .warmupQueries(warmupQueries)
+                        .warmupDuration(warmupDuration)
+                        .cancelled(() -> cancelled)
+                        .failedQueries(failedQueries)
+                        .corpus(corpus)
+                        .trial(trial)
+                        .startTime(startTime)
+                        .build()
+                        .run();
+            } else {
+                runClientThreads(trial, startTime, host, port, numberOfClients, numberOfQueries, queriesDelay,
+                        arraySize, arrivalRate);
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+
+        trial.duration = (System.nanoTime() - startTime.get()) / (double) TimeUnit.SECONDS.toNanos(1);
+        return trial;
+    }
+
+    /**
+     * Runs trial with a blocking client and a thread per simulated client.
+     */
+    private void runClientThreads(@NotNull Trial trial, @NotNull AtomicLong startTime, @NotNull String host,
+                                  int port, int numberOfClients, int numberOfQueries, int queriesDelay,
+                                  int arraySize, int arrivalRate) throws IOException, InterruptedException {
+        boolean openLoop = arrivalRate > 0;
+        long interval = openLoop ? TimeUnit.SECONDS.toNanos(numberOfClients) / arrivalRate : 0;
+        Client[] clients = new Client[numberOfClients];
+        for (int i = 0; i < numberOfClients; i++) {
+            clients[i] = new Client(host, port, sortAlgorithm, wireFormat, openLoop ? Integer.MAX_VALUE : pipelineDepth);
+        }
+
+        CyclicBarrier warmedUp = new CyclicBarrier(numberOfClients, () -> startTime.set(System.nanoTime()));
+        ObjIntConsumer<Client> clientQueries = (Client client, int clientIndex) -> {
+            warmUp(client, clientIndex, numberOfClients, arraySize);
+            try {
+                warmedUp.await();
+            } catch (InterruptedException | BrokenBarrierException exception) {
+                failedQueries.addAndGet(numberOfQueries);
+                return;
+            }
 
-            for (int i = 0; i < numberOfQueries; i++) {
+            //clients are shifted against each other so that requests arrive evenly
+            long firstSendTime = startTime.get() + interval * clientIndex / numberOfClients;
+            List<CompletableFuture<SortResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < numberOfQueries && !cancelled; i++) {
                 try {
-                    client.sort(generateArray(arraySize));
-                    sortTime += client.getSortTime();
-                    clientProcessingTime += client.getClientProcessingTime();
-                    Thread.sleep(queriesDelay);
+                    IntBuffer array = corpus.get(arraySize, (long) i * numberOfClients + clientIndex);
+                    long sendTime;
+                    if (openLoop) {
+                        sendTime = firstSendTime + i * interval;
+                        long wait = sendTime - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    } else {
+                        sendTime = System.nanoTime();
+                    }
+
+                    responses.add(client.submit(array).whenComplete((response, exception) -> {
+                        if (response != null) {
+                            trial.addAnswer(System.nanoTime() - sendTime, response);
+                        }
+                    }));
+                    if (!openLoop) {
+                        Thread.sleep(queriesDelay);
+                    }
                 } catch (Exception exception) {
                     failedQueries.addAndGet(1);
                 }
             }
-            answerTime.stop();
-
-            synchronized (sortTimes) {
-                sortTimes.add(sortTime / (double) numberOfQueries);
-            }
-            synchronized (clientProcessingTimes) {
-                clientProcessingTimes.add(clientProcessingTime / (double) numberOfQueries);
+            for (CompletableFuture<SortResponse> future : responses) {
+                try {
+                    future.get();
+                } catch (Exception exception) {
+                    failedQueries.addAndGet(1);
+                }
             }
-            synchronized (answerTimes) {
-                answerTimes.add(answerTime.getTime(TimeUnit.MILLISECONDS) / (double) numberOfQueries);
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                //nothing to do
             }
         };
 
         Thread[] clientsThreads = new Thread[numberOfClients];
         for (int i = 0; i < numberOfClients; i++) {
-            Client client = new Client(host, port);
-            clientsThreads[i] = new Thread(() -> clientQueries.accept(client));
+            Client client = clients[i];
+            int clientIndex = i;
+            clientsThreads[i] = new Thread(() -> clientQueries.accept(client, clientIndex));
         }
         for (int i = 0; i < numberOfClients; i++) {
             clientsThreads[i].start();
@@ -162,10 +761,41 @@ public class PerformanceTester {
         for (int i = 0; i < numberOfClients; i++) {
             clientsThreads[i].join();
         }
+    }
+
+    /**
+     * Passes answers received since the previous sample to listeners.
+     *
+     * @param startTime time when measured queries started, 0 if clients are still warming up
+     */
+    private void publishProgress(@NotNull Trial trial, int step, int trialIndex, long startTime) {
+        if (startTime == 0 || listeners.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        long intervalStart = Math.max(trial.lastSampleTime, startTime);
+        trial.lastSampleTime = now;
+        ProgressSample sample = ProgressSample.of(step, trialIndex, (now - startTime) / NANOS_PER_SECOND,
+                trial.intervalAnswerTimes.getIntervalHistogram(), (now - intervalStart) / NANOS_PER_SECOND);
+        for (PerformanceListener listener : listeners) {
+            listener.progress(sample);
+        }
+    }
 
-        sortTime.add(sortTimes.stream().mapToDouble(Double::doubleValue).average().orElse(0));
-        answerTime.add(answerTimes.stream().mapToDouble(Double::doubleValue).average().orElse(0));
-        clientProcessingTime.add(clientProcessingTimes.stream().mapToDouble(Double::doubleValue).average().orElse(0));
+    /**
+     * Sends queries which aren't measured until both warmup query count and warmup duration are reached.
+     */
+    private void warmUp(@NotNull Client client, int clientIndex, int numberOfClients, int arraySize) {
+        long warmupEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupDuration);
+        for (int i = 0; (i < warmupQueries || System.nanoTime() < warmupEnd) && !cancelled; i++) {
+            try {
+                client.sort(corpus.get(arraySize, (long) i * numberOfClients + clientIndex));
+            } catch (RequestRejectedException ignored) {
+                //connection is still usable
+            } catch (IOException exception) {
+                return;
+            }
+        }
     }
 
     @NotNull
@@ -173,6 +803,19 @@ public class PerformanceTester {
                                                   int maxValue, @NotNull ServerArchitecture architecture) {
         return PerformanceTestResult.builder()
                 .architecture(architecture)
+                .sortAlgorithm(sortAlgorithm)
+                .wireFormat(wireFormat)
+                .pipelineDepth(pipelineDepth)
+                .arrivalRate(arrivalRate)
+                .workerThreads(workerThreads)
+                .ioThreads(ioThreads)
+                .queueCapacity(queueCapacity)
+                .overloadPolicy(overloadPolicy)
+                .cacheCapacity(cacheCapacity)
+                .loadGenerator(loadGenerator)
+                .distribution(distribution)
+                .corpusSeed(corpusSeed)
+                .corpusArrays(corpusArrays)
                 .parameter(parameter)
                 .step(step)
                 .maxValue(maxValue)
@@ -183,25 +826,56 @@ public class PerformanceTester {
                 .answerTime(answerTime)
                 .clientProcessingTime(clientProcessingTime)
                 .sortTime(sortTime)
+                .requestBytes(requestBytes)
+                .responseBytes(responseBytes)
+                .answerTimePercentiles(answerTimePercentiles)
+                .clientProcessingTimePercentiles(clientProcessingTimePercentiles)
+                .sortTimePercentiles(sortTimePercentiles)
+                .duration(duration)
+                .throughput(throughput)
+                .requestBytesPerSecond(requestBytesPerSecond)
+                .responseBytesPerSecond(responseBytesPerSecond)
+                .warmupQueries(warmupQueries)
+                .warmupDuration(warmupDuration)
+                .trials(trials)
+                .answerTimeStatistics(answerTimeStatistics)
+                .clientProcessingTimeStatistics(clientProcessingTimeStatistics)
+                .sortTimeStatistics(sortTimeStatistics)
+                .throughputStatistics(throughputStatistics)
+                .serverMetrics(serverMetrics)
+                .stageBreakdown(stageBreakdown)
                 .failedQueries(failedQueries.get())
+                .cancelled(cancelled)
                 .build();
     }
 
     private void clear() {
+        cancelled = false;
         failedQueries.set(0);
         sortTime.clear();
         answerTime.clear();
         clientProcessingTime.clear();
+        requestBytes.clear();
+        responseBytes.clear();
+        answerTimePercentiles.clear();
+        clientProcessingTimePercentiles.clear();
+        sortTimePercentiles.clear();
+        duration.clear();
+        throughput.clear();
+        requestBytesPerSecond.clear();
+        responseBytesPerSecond.clear();
+        answerTimeStatistics.clear();
+        clientProcessingTimeStatistics.clear();
+        sortTimeStatistics.clear();
+        throughputStatistics.clear();
+        serverMetrics.clear();
+        stageBreakdown.clear();
     }
 
-    @NotNull
-    private static int[] generateArray(int size) {
-        int[] array = new int[size];
-
-        for (int i = 0; i < size; i++) {
-            array[i] = ThreadLocalRandom.current().nextInt();
+    private static double meanMillis(@NotNull Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return 0;
         }
-
-        return array;
+        return histogram.getMean() / TimeUnit.MILLISECONDS.toNanos(1);
     }
 }
@@ -0,0 +1,47 @@
+package ru.spbau.mit.kazakov.performance;
+
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers received by clients during the last sampling interval of a running trial. Times are in milliseconds.
+ */
+@Value
+public class ProgressSample {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Index of the step in its test, starting from 0.
+     */
+    private int step;
+    /**
+     * Index of the trial in its step, starting from 0.
+     */
+    private int trial;
+    /**
+     * Seconds since measured queries of the trial started.
+     */
+    private double elapsedTime;
+    /**
+     * Answers per second during the interval.
+     */
+    private double throughput;
+    private double meanAnswerTime;
+    private double p99AnswerTime;
+
+    /**
+     * @param answerTimes    nanosecond answer times recorded during the interval
+     * @param intervalLength length of the interval in seconds
+     */
+    @NotNull
+    static ProgressSample of(int step, int trial, double elapsedTime, @NotNull Histogram answerTimes,
+                             double intervalLength) {
+        long answered = answerTimes.getTotalCount();
+        return new ProgressSample(step, trial, elapsedTime, answered / intervalLength,
+                answered == 0 ? 0 : answerTimes.getMean() / NANOS_PER_MILLI,
+                answerTimes.getValueAtPercentile(99) / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,246 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.server.ServerMetricsSnapshot;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes results of performance test to a directory: description, one file of points per metric
+ * and machine-readable results.csv.
+ */
+public class ResultWriter {
+    private static final String CSV_HEADER = "parameter_value,answer_time,sort_time,client_processing_time,"
+            + "request_bytes,response_bytes,"
+            + "answer_time_p50,answer_time_p90,answer_time_p99,answer_time_p999,answer_time_max,"
+            + "sort_time_p50,sort_time_p90,sort_time_p99,sort_time_p999,sort_time_max,"
+            + "client_processing_time_p50,client_processing_time_p90,client_processing_time_p99,"
+            + "client_processing_time_p999,client_processing_time_max,"
+            + "duration,throughput,request_bytes_per_second,response_bytes_per_second,"
+            + "answer_time_stddev,answer_time_ci95,sort_time_stddev,sort_time_ci95,"
+            + "client_processing_time_stddev,client_processing_time_ci95,throughput_stddev,throughput_ci95,"
+            + "stage_read,stage_deserialize,stage_queue_wait,stage_sort,stage_serialize,stage_write_queue_wait";
+
+    private ResultWriter() {
+    }
+
+    public static void write(@NotNull PerformanceTestResult result, @NotNull File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        File description = new File(directory, "description");
+        try (FileWriter writer = new FileWriter(description)) {
+            writer.write("Architecture: " + result.getArchitecture() + "\n");
+            writer.write("Sort algorithm: " + result.getSortAlgorithm() + "\n");
+            writer.write("Wire format: " + result.getWireFormat() + "\n");
+            writer.write("Parameter: " + result.getParameter() + "\n");
+            writer.write("Step: " + result.getStep() + "\n");
+            writer.write("Max value: " + result.getMaxValue() + "\n");
+            writer.write("Array size: " + result.getArraySize() + "\n");
+            writer.write("Number of clients: " + result.getClientsNumber() + "\n");
+            writer.write("Query delay: " + result.getQueriesDelay() + "\n");
+            writer.write("Number of queries: " + result.getQueriesNumber() + "\n");
+            writer.write("Pipeline depth: " + result.getPipelineDepth() + "\n");
+            writer.write("Arrival rate: " + result.getArrivalRate() + "\n");
+            writer.write("Warmup queries: " + result.getWarmupQueries() + "\n");
+            writer.write("Warmup duration: " + result.getWarmupDuration() + "\n");
+            writer.write("Trials: " + result.getTrials() + "\n");
+            writer.write("Worker threads: " + result.getWorkerThreads() + "\n");
+            writer.write("I/O threads: " + result.getIoThreads() + "\n");
+            writer.write("Queue capacity: " + result.getQueueCapacity() + "\n");
+            writer.write("Overload policy: " + result.getOverloadPolicy() + "\n");
+            writer.write("Cache capacity: " + result.getCacheCapacity() + "\n");
+            writer.write("Load generator: " + result.getLoadGenerator() + "\n");
+            writer.write("Distribution: " + result.getDistribution() + "\n");
+            writer.write("Corpus seed: " + result.getCorpusSeed() + "\n");
+            writer.write("Corpus arrays: " + result.getCorpusArrays() + "\n");
+            writer.write("Failed queries: " + result.getFailedQueries() + "\n");
+            writer.write("Cancelled: " + result.isCancelled() + "\n");
+        }
+
+        int initValue = result.getInitValue();
+        int step = result.getStep();
+        printDots(new File(directory, "answer_time"), result.getAnswerTime(), initValue, step);
+        printDots(new File(directory, "sort_time"), result.getSortTime(), initValue, step);
+        printDots(new File(directory, "client_processing_time"), result.getClientProcessingTime(), initValue, step);
+        printDots(new File(directory, "request_bytes"), result.getRequestBytes(), initValue, step);
+        printDots(new File(directory, "response_bytes"), result.getResponseBytes(), initValue, step);
+        printDots(new File(directory, "duration"), result.getDuration(), initValue, step);
+        printDots(new File(directory, "throughput"), result.getThroughput(), initValue, step);
+        printDots(new File(directory, "request_bytes_per_second"), result.getRequestBytesPerSecond(),
+                initValue, step);
+        printDots(new File(directory, "response_bytes_per_second"), result.getResponseBytesPerSecond(),
+                initValue, step);
+        printPercentiles(new File(directory, "answer_time_percentiles"), result.getAnswerTimePercentiles(),
+                initValue, step);
+        printPercentiles(new File(directory, "sort_time_percentiles"), result.getSortTimePercentiles(),
+                initValue, step);
+        printPercentiles(new File(directory, "client_processing_time_percentiles"),
+                result.getClientProcessingTimePercentiles(), initValue, step);
+
+        printStatistics(new File(directory, "answer_time_statistics"), result.getAnswerTimeStatistics(),
+                initValue, step);
+        printStatistics(new File(directory, "sort_time_statistics"), result.getSortTimeStatistics(),
+                initValue, step);
+        printStatistics(new File(directory, "client_processing_time_statistics"),
+                result.getClientProcessingTimeStatistics(), initValue, step);
+        printStatistics(new File(directory, "throughput_statistics"), result.getThroughputStatistics(),
+                initValue, step);
+        printServerMetrics(new File(directory, "server_metrics"), result.getServerMetrics(), initValue, step);
+        printStageBreakdown(new File(directory, "stage_breakdown"), result.getStageBreakdown(), initValue, step);
+
+        try (FileWriter writer = new FileWriter(new File(directory, "results.csv"))) {
+            writer.write(CSV_HEADER + "\n");
+            writeCsvRows(result, "", writer);
+        }
+    }
+
+    /**
+     * Returns header of CSV produced by {@link #writeCsvRows} with extra leading columns.
+     */
+    @NotNull
+    public static String csvHeader(@NotNull String leadingColumns) {
+        return leadingColumns + CSV_HEADER;
+    }
+
+    /**
+     * Writes one CSV row per step of the test, each row starting with specified prefix.
+     */
+    public static void writeCsvRows(@NotNull PerformanceTestResult result, @NotNull String prefix,
+                                    @NotNull Writer writer) throws IOException {
+        for (int i = 0; i < result.getAnswerTime().size(); i++) {
+            StringBuilder row = new StringBuilder(prefix);
+            row.append(result.getInitValue() + i * result.getStep())
+                    .append(',').append(result.getAnswerTime().get(i))
+                    .append(',').append(result.getSortTime().get(i))
+                    .append(',').append(result.getClientProcessingTime().get(i))
+                    .append(',').append(result.getRequestBytes().get(i))
+                    .append(',').append(result.getResponseBytes().get(i));
+            appendPercentiles(row, result.getAnswerTimePercentiles().get(i));
+            appendPercentiles(row, result.getSortTimePercentiles().get(i));
+            appendPercentiles(row, result.getClientProcessingTimePercentiles().get(i));
+            row.append(',').append(result.getDuration().get(i))
+                    .append(',').append(result.getThroughput().get(i))
+                    .append(',').append(result.getRequestBytesPerSecond().get(i))
+                    .append(',').append(result.getResponseBytesPerSecond().get(i));
+            appendStatistics(row, result.getAnswerTimeStatistics().get(i));
+            appendStatistics(row, result.getSortTimeStatistics().get(i));
+            appendStatistics(row, result.getClientProcessingTimeStatistics().get(i));
+            appendStatistics(row, result.getThroughputStatistics().get(i));
+            for (ProcessingStage stage : ProcessingStage.values()) {
+                row.append(',').append(result.getStageBreakdown().get(i).getMeanTime(stage));
+            }
+            writer.write(row.append('\n').toString());
+        }
+    }
+
+    private static void appendPercentiles(@NotNull StringBuilder row, @NotNull LatencyPercentiles percentiles) {
+        row.append(',').append(percentiles.getP50())
+                .append(',').append(percentiles.getP90())
+                .append(',').append(percentiles.getP99())
+                .append(',').append(percentiles.getP999())
+                .append(',').append(percentiles.getMax());
+    }
+
+    private static void appendStatistics(@NotNull StringBuilder row, @NotNull TrialStatistics statistics) {
+        row.append(',').append(statistics.getStandardDeviation())
+                .append(',').append(statistics.getConfidenceInterval());
+    }
+
+    private static void printDots(@NotNull File file, @NotNull List<Double> values, int initValue,
+                                  int step) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(values.size() + "\n");
+            for (int i = 0; i < values.size(); i++) {
+                writer.write(initValue + i * step + " " + values.get(i) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes one line per step: parameter value, p50, p90, p99, p99.9 and max.
+     */
+    private static void printPercentiles(@NotNull File file, @NotNull List<LatencyPercentiles> percentiles,
+                                         int initValue, int step) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(percentiles.size() + "\n");
+            for (int i = 0; i < percentiles.size(); i++) {
+                LatencyPercentiles point = percentiles.get(i);
+                writer.write(initValue + i * step + " " + point.getP50() + " " + point.getP90() + " "
+                        + point.getP99() + " " + point.getP999() + " " + point.getMax() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes one line per step: parameter value and mean time of each processing stage in stage order.
+     */
+    private static void printStageBreakdown(@NotNull File file, @NotNull List<StageBreakdown> breakdown,
+                                            int initValue, int step) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(breakdown.size() + "\n");
+            for (int i = 0; i < breakdown.size(); i++) {
+                StringBuilder line = new StringBuilder().append(initValue + i * step);
+                for (ProcessingStage stage : ProcessingStage.values()) {
+                    line.append(' ').append(breakdown.get(i).getMeanTime(stage));
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+    }
+
+    /**
+     * Writes one line per step which server's metrics are known for: parameter value, accepted and closed
+     * connections, requests in progress, completed requests, queue length, bytes read and written,
+     * parse failures, I/O errors, rejected requests, cache hits, misses and evictions, mean, p99 and max
+     * of processing time and of sort time, event loop CPU load, buffer pool hits and misses.
+     */
+    private static void printServerMetrics(@NotNull File file, @NotNull List<ServerMetricsSnapshot> metrics,
+                                           int initValue, int step) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(metrics.stream().filter(Objects::nonNull).count() + "\n");
+            for (int i = 0; i < metrics.size(); i++) {
+                ServerMetricsSnapshot point = metrics.get(i);
+                if (point == null) {
+                    continue;
+                }
+                writer.write(initValue + i * step + " " + point.getAcceptedConnections() + " "
+                        + point.getClosedConnections() + " " + point.getRequestsInProgress() + " "
+                        + point.getCompletedRequests() + " " + point.getQueueLength() + " "
+                        + point.getBytesRead() + " " + point.getBytesWritten() + " "
+                        + point.getParseFailures() + " " + point.getIoErrors() + " "
+                        + point.getRejectedRequests() + " "
+                        + point.getCacheHits() + " " + point.getCacheMisses() + " "
+                        + point.getCacheEvictions() + " "
+                        + point.getProcessingTimeMean() + " " + point.getProcessingTimeP99() + " "
+                        + point.getProcessingTimeMax() + " " + point.getSortTimeMean() + " "
+                        + point.getSortTimeP99() + " " + point.getSortTimeMax() + " "
+                        + point.getEventLoopCpuLoad() + " " + point.getBufferPoolHits() + " "
+                        + point.getBufferPoolMisses() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes one line per step: parameter value, mean over trials, standard deviation and
+     * half-width of 95% confidence interval.
+     */
+    private static void printStatistics(@NotNull File file, @NotNull List<TrialStatistics> statistics,
+                                        int initValue, int step) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(statistics.size() + "\n");
+            for (int i = 0; i < statistics.size(); i++) {
+                TrialStatistics point = statistics.get(i);
+                writer.write(initValue + i * step + " " + point.getMean() + " " + point.getStandardDeviation() + " "
+                        + point.getConfidenceInterval() + "\n");
+            }
+        }
+    }
+}
@@ -1,47 +1,89 @@
 package ru.spbau.mit.kazakov.performance;
 
 import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.server.*;
+
+import java.io.IOException;
 
 public enum  ServerArchitecture {
     BLOCKING {
         @Override
-        @NotNull
-        String getHost() {
-            return "192.168.210.74";
+        public int getDefaultPort() {
+            return 5555;
         }
 
         @Override
-        int getPort() {
-            return 5555;
+        @NotNull
+        public Server createServer(@NotNull ServerConfig config) throws IOException {
+            return new BlockingServer(config);
         }
     },
     NONBLOCKING {
+        @Override
+        public int getDefaultPort() {
+            return 6666;
+        }
+
         @Override
         @NotNull
-        String getHost() {
-            return "192.168.210.74";
+        public Server createServer(@NotNull ServerConfig config) throws IOException {
+            return new NonblockingServer(config);
+        }
+    },
+    REACTOR {
+        @Override
+        public int getDefaultPort() {
+            return 8888;
         }
 
         @Override
-        int getPort() {
-            return 6666;
+        @NotNull
+        public Server createServer(@NotNull ServerConfig config) throws IOException {
+            return new ReactorServer(config);
         }
     },
-    SIMPLE {
+    ASYNC {
+        @Override
+        public int getDefaultPort() {
+            return 9999;
+        }
+
         @Override
         @NotNull
-        String getHost() {
-            return "192.168.210.74";
+        public Server createServer(@NotNull ServerConfig config) throws IOException {
+            return new AsyncServer(config);
+        }
+    },
+    VIRTUAL_THREADS {
+        @Override
+        public int getDefaultPort() {
+            return 4444;
         }
 
         @Override
-        int getPort() {
+        @NotNull
+        public Server createServer(@NotNull ServerConfig config) throws IOException {
+            return new VirtualThreadServer(config);
+        }
+    },
+    SIMPLE {
+        @Override
+        public int getDefaultPort() {
             return 7777;
         }
+
+        @Override
+        @NotNull
+        public Server createServer(@NotNull ServerConfig config) throws IOException {
+            return new SimpleServer(config);
+        }
     };
 
-    @NotNull
-    abstract String getHost();
+    /**
+     * Returns port the architecture listens to unless configured otherwise.
+     */
+    public abstract int getDefaultPort();
 
-    abstract int getPort();
+    @NotNull
+    public abstract Server createServer(@NotNull ServerConfig config) throws IOException;
 }
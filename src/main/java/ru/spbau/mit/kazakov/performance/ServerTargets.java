@@ -0,0 +1,86 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Addresses of tested servers. Configured by properties
+ * {@code host} (common for all architectures), {@code <architecture>.host} and {@code <architecture>.port},
+ * architecture named in lower case, e.g. {@code nonblocking.port=6666}.
+ * Architectures without configured address are looked for on localhost at their default ports.
+ * Optional {@code <architecture>.metrics-port} is the port of server's metrics endpoint on the same host.
+ */
+public class ServerTargets {
+    public static final String DEFAULT_HOST = "localhost";
+    private static final String HOST = "host";
+    private static final String PORT = "port";
+    private static final String METRICS_PORT = "metrics-port";
+
+    private final Properties properties;
+
+    public ServerTargets() {
+        this(new Properties());
+    }
+
+    public ServerTargets(@NotNull Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns targets with all architectures running on specified host at their default ports.
+     */
+    @NotNull
+    public static ServerTargets ofHost(@NotNull String host) {
+        Properties properties = new Properties();
+        properties.setProperty(HOST, host);
+        return new ServerTargets(properties);
+    }
+
+    @NotNull
+    public static ServerTargets load(@NotNull File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        return new ServerTargets(properties);
+    }
+
+    @NotNull
+    public String getHost(@NotNull ServerArchitecture architecture) {
+        return properties.getProperty(key(architecture, HOST), properties.getProperty(HOST, DEFAULT_HOST)).trim();
+    }
+
+    public int getPort(@NotNull ServerArchitecture architecture) {
+        return getPort(architecture, PORT, architecture.getDefaultPort());
+    }
+
+    /**
+     * Returns port of architecture's metrics endpoint or 0 if it isn't configured.
+     */
+    public int getMetricsPort(@NotNull ServerArchitecture architecture) {
+        return getPort(architecture, METRICS_PORT, 0);
+    }
+
+    private int getPort(@NotNull ServerArchitecture architecture, @NotNull String property, int defaultPort) {
+        String port = properties.getProperty(key(architecture, property));
+        if (port == null) {
+            return defaultPort;
+        }
+        try {
+            return Integer.parseInt(port.trim());
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid " + property + " of " + architecture + ": " + port);
+        }
+    }
+
+    @NotNull
+    private static String key(@NotNull ServerArchitecture architecture, @NotNull String property) {
+        return architecture.name().toLowerCase(Locale.ROOT) + "." + property;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.spbau.mit.kazakov.performance;
+
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mean time requests of a single test step spent in each processing stage on server. Values are in milliseconds.
+ */
+@Value
+public class StageBreakdown {
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private Map<ProcessingStage, Double> meanTimes;
+
+    /**
+     * @param totalTimes total nanoseconds of all requests indexed by stage ordinal
+     * @param requests   number of requests which reported stage timings
+     */
+    @NotNull
+    public static StageBreakdown of(@NotNull long[] totalTimes, long requests) {
+        Map<ProcessingStage, Double> meanTimes = new EnumMap<>(ProcessingStage.class);
+        for (ProcessingStage stage : ProcessingStage.values()) {
+            meanTimes.put(stage, requests == 0 ? 0 : totalTimes[stage.ordinal()] / (double) requests / NANOS_PER_MILLI);
+        }
+        return new StageBreakdown(Collections.unmodifiableMap(meanTimes));
+    }
+
+    public double getMeanTime(@NotNull ProcessingStage stage) {
+        return meanTimes.get(stage);
+    }
+}
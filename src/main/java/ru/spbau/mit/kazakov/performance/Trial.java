@@ -0,0 +1,71 @@
+package ru.spbau.mit.kazakov.performance;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.mit.kazakov.SortResponse;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of single trial. Answers may be recorded by several threads at once.
+ */
+class Trial {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final ProcessingStage[] STAGES = ProcessingStage.values();
+
+    final Histogram answerTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    final Histogram clientProcessingTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    final Histogram sortTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    final LongAdder requestsBytes = new LongAdder();
+    final LongAdder responsesBytes = new LongAdder();
+    final LongAdder[] stageTimes = new LongAdder[STAGES.length];
+    final LongAdder timedResponses = new LongAdder();
+    /**
+     * Answer times since the last progress sample.
+     */
+    final Recorder intervalAnswerTimes = new Recorder(SIGNIFICANT_DIGITS);
+    /**
+     * Accessed by sampling thread only.
+     */
+    long lastSampleTime = 0;
+    /**
+     * Seconds from the end of warmup to the last response.
+     */
+    double duration;
+
+    Trial() {
+        for (int i = 0; i < STAGES.length; i++) {
+            stageTimes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records measured query.
+     *
+     * @param answerTime nanoseconds from sending the request to receiving its response
+     */
+    void addAnswer(long answerTime, @NotNull SortResponse response) {
+        answerTimes.recordValue(answerTime);
+        intervalAnswerTimes.recordValue(answerTime);
+        clientProcessingTimes.recordValue(response.getClientProcessingTime());
+        sortTimes.recordValue(response.getSortTime());
+        requestsBytes.add(response.getSentBytes());
+        responsesBytes.add(response.getReceivedBytes());
+        addStageTimings(response.getStageTimings());
+    }
+
+    private void addStageTimings(@Nullable StageTimings timings) {
+        if (timings == null) {
+            return;
+        }
+        for (ProcessingStage stage : STAGES) {
+            stageTimes[stage.ordinal()].add(timings.get(stage));
+        }
+        timedResponses.increment();
+    }
+}
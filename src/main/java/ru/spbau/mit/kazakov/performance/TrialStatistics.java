@@ -0,0 +1,55 @@
+package ru.spbau.mit.kazakov.performance;
+
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Spread of a value measured in several trials of the same test step.
+ */
+@Value
+public class TrialStatistics {
+    /**
+     * Two-sided 95% quantiles of Student's t-distribution for 1 to 30 degrees of freedom.
+     */
+    private static final double[] T_QUANTILES = {
+            12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+    private static final double NORMAL_QUANTILE = 1.960;
+
+    private double mean;
+    /**
+     * Sample standard deviation, 0 for a single trial.
+     */
+    private double standardDeviation;
+    /**
+     * Half-width of 95% confidence interval of the mean, 0 for a single trial.
+     */
+    private double confidenceInterval;
+
+    @NotNull
+    public static TrialStatistics of(@NotNull double[] values) {
+        int n = values.length;
+        if (n == 0) {
+            throw new IllegalArgumentException();
+        }
+
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        double mean = sum / n;
+        if (n == 1) {
+            return new TrialStatistics(mean, 0, 0);
+        }
+
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        double standardDeviation = Math.sqrt(squares / (n - 1));
+        double quantile = n - 1 <= T_QUANTILES.length ? T_QUANTILES[n - 2] : NORMAL_QUANTILE;
+        return new TrialStatistics(mean, standardDeviation, quantile * standardDeviation / Math.sqrt(n));
+    }
+}
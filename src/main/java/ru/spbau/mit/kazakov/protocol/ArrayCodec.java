@@ -0,0 +1,49 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.utils.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Converts arrays to and from the payload of a length-prefixed packet.
+ */
+public interface ArrayCodec {
+    /**
+     * Serializes specified array.
+     *
+     * @return buffer positioned at the beginning of serialized data
+     */
+    @NotNull
+    ByteBuffer encode(@NotNull int[] array);
+
+    /**
+     * Serializes remaining elements of specified buffer without changing its position.
+     *
+     * @return buffer positioned at the beginning of serialized data
+     */
+    @NotNull
+    default ByteBuffer encode(@NotNull IntBuffer array) {
+        int[] elements = new int[array.remaining()];
+        array.duplicate().get(elements);
+        return encode(elements);
+    }
+
+    /**
+     * Serializes specified array, possibly into a buffer acquired from specified pool.
+     *
+     * @return buffer positioned at the beginning of serialized data
+     */
+    @NotNull
+    default ByteBuffer encode(@NotNull int[] array, @NotNull BufferPool pool) {
+        return encode(array);
+    }
+
+    /**
+     * Deserializes array from remaining bytes of specified buffer.
+     */
+    @NotNull
+    int[] decode(@NotNull ByteBuffer buffer) throws IOException;
+}
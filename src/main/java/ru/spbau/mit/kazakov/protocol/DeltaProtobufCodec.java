@@ -0,0 +1,26 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
+import ru.spbau.mit.kazakov.utils.ArrayUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes arrays as {@link ArrayOuterClass.DeltaArray} messages.
+ * Works for any array, but is compact only for sorted ones, i.e. for responses.
+ */
+public class DeltaProtobufCodec implements ArrayCodec {
+    @Override
+    @NotNull
+    public ByteBuffer encode(@NotNull int[] array) {
+        return ByteBuffer.wrap(ArrayUtils.toDeltaArray(array).toByteArray());
+    }
+
+    @Override
+    @NotNull
+    public int[] decode(@NotNull ByteBuffer buffer) throws IOException {
+        return ArrayUtils.toIntArray(ArrayOuterClass.DeltaArray.parseFrom(buffer));
+    }
+}
@@ -0,0 +1,107 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Connection settings sent by client once right after connecting.
+ * Protocol version is carried in the high half of the first int, clients which predate versioning send 0 there
+ * and are served with {@link #LEGACY_VERSION}.
+ */
+@Value
+public class Handshake {
+    public static final int SIZE = 2 * Integer.BYTES;
+    /**
+     * Response header holds processing time, sort time and payload length.
+     */
+    public static final int LEGACY_VERSION = 1;
+    /**
+     * Response header additionally holds time of each processing stage, see {@link ResponseHeader}.
+     */
+    public static final int STAGE_TIMINGS_VERSION = 2;
+    public static final int CURRENT_VERSION = STAGE_TIMINGS_VERSION;
+    private static final int VERSION_SHIFT = 16;
+    private static final int ORDINAL_MASK = (1 << VERSION_SHIFT) - 1;
+
+    private SortAlgorithm sortAlgorithm;
+    private WireFormat wireFormat;
+    private int version;
+
+    /**
+     * Creates handshake of current protocol version.
+     */
+    public Handshake(@NotNull SortAlgorithm sortAlgorithm, @NotNull WireFormat wireFormat) {
+        this(sortAlgorithm, wireFormat, CURRENT_VERSION);
+    }
+
+    public Handshake(@NotNull SortAlgorithm sortAlgorithm, @NotNull WireFormat wireFormat, int version) {
+        if (version < LEGACY_VERSION || version > CURRENT_VERSION) {
+            throw new IllegalArgumentException();
+        }
+        this.sortAlgorithm = sortAlgorithm;
+        this.wireFormat = wireFormat;
+        this.version = version;
+    }
+
+    public void write(@NotNull DataOutputStream out) throws IOException {
+        int versionBits = version == LEGACY_VERSION ? 0 : version << VERSION_SHIFT;
+        out.writeInt(versionBits | sortAlgorithm.ordinal());
+        out.writeInt(wireFormat.ordinal());
+        out.flush();
+    }
+
+    @NotNull
+    public static Handshake read(@NotNull DataInputStream in) throws IOException {
+        int first = in.readInt();
+        return create(first, in.readInt());
+    }
+
+    /**
+     * Reads handshake from channel in blocking mode.
+     */
+    @NotNull
+    public static Handshake read(@NotNull ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return read(buffer);
+    }
+
+    @NotNull
+    public static Handshake read(@NotNull ByteBuffer buffer) throws ProtocolException {
+        int first = buffer.getInt();
+        return create(first, buffer.getInt());
+    }
+
+    @NotNull
+    private static Handshake create(int first, int second) throws ProtocolException {
+        int version = Math.max(first >>> VERSION_SHIFT, LEGACY_VERSION);
+        if (version > CURRENT_VERSION) {
+            throw new ProtocolException("Unsupported protocol version: " + version);
+        }
+        SortAlgorithm sortAlgorithm = toConstant(SortAlgorithm.values(), first & ORDINAL_MASK);
+        WireFormat wireFormat = toConstant(WireFormat.values(), second);
+        return new Handshake(sortAlgorithm, wireFormat, version);
+    }
+
+    @NotNull
+    private static <T extends Enum<T>> T toConstant(@NotNull T[] constants, int id) throws ProtocolException {
+        if (id < 0 || id >= constants.length) {
+            throw new ProtocolException("Unknown " + constants[0].getDeclaringClass().getSimpleName() + ": " + id);
+        }
+        return constants[id];
+    }
+}
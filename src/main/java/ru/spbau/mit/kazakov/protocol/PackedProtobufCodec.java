@@ -0,0 +1,25 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
+import ru.spbau.mit.kazakov.utils.ArrayUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes arrays as {@link ArrayOuterClass.PackedArray} messages.
+ */
+public class PackedProtobufCodec implements ArrayCodec {
+    @Override
+    @NotNull
+    public ByteBuffer encode(@NotNull int[] array) {
+        return ByteBuffer.wrap(ArrayUtils.toPackedArray(array).toByteArray());
+    }
+
+    @Override
+    @NotNull
+    public int[] decode(@NotNull ByteBuffer buffer) throws IOException {
+        return ArrayUtils.toIntArray(ArrayOuterClass.PackedArray.parseFrom(buffer));
+    }
+}
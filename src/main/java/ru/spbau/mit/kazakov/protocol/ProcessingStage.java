@@ -0,0 +1,60 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stages of serving a request which server reports time of. Constants are in the order of the response header.
+ */
+public enum ProcessingStage {
+    /**
+     * From receiving length prefix to receiving the whole packet.
+     */
+    READ {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Read";
+        }
+    },
+    DESERIALIZE {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Deserialize";
+        }
+    },
+    /**
+     * Waiting for a worker thread.
+     */
+    QUEUE_WAIT {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Queue wait";
+        }
+    },
+    SORT {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Sort";
+        }
+    },
+    SERIALIZE {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Serialize";
+        }
+    },
+    /**
+     * From response being ready to its header being composed by the thread writing responses.
+     */
+    WRITE_QUEUE_WAIT {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Write queue wait";
+        }
+    }
+}
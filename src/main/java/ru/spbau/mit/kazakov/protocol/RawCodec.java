@@ -0,0 +1,57 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.utils.BufferPool;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Serializes arrays as raw little-endian int32 values. Number of elements is derived from the packet length.
+ */
+public class RawCodec implements ArrayCodec {
+    @Override
+    @NotNull
+    public ByteBuffer encode(@NotNull int[] array) {
+        ByteBuffer buffer = ByteBuffer.allocate(array.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(array);
+        return buffer;
+    }
+
+    /**
+     * Copies elements in bulk without an intermediate array.
+     */
+    @Override
+    @NotNull
+    public ByteBuffer encode(@NotNull IntBuffer array) {
+        ByteBuffer buffer = ByteBuffer.allocate(array.remaining() * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(array.duplicate());
+        return buffer;
+    }
+
+    /**
+     * Writes elements straight into a pooled direct buffer.
+     */
+    @Override
+    @NotNull
+    public ByteBuffer encode(@NotNull int[] array, @NotNull BufferPool pool) {
+        ByteBuffer buffer = pool.acquire(array.length * Integer.BYTES);
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(array);
+        return buffer;
+    }
+
+    @Override
+    @NotNull
+    public int[] decode(@NotNull ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() % Integer.BYTES != 0) {
+            throw new ProtocolException("Packet length is not a multiple of int size: " + buffer.remaining());
+        }
+
+        int[] array = new int[buffer.remaining() / Integer.BYTES];
+        buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(array);
+        buffer.position(buffer.limit());
+        return array;
+    }
+}
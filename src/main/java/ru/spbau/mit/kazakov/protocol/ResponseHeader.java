@@ -0,0 +1,114 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Header preceding payload of a response, layout depends on protocol version of the handshake.
+ * {@link Handshake#LEGACY_VERSION}: long processing time, long sort time, int payload length.
+ * {@link Handshake#STAGE_TIMINGS_VERSION}: long processing time, long sort time, int number of stages,
+ * long time of each stage in {@link ProcessingStage} order, int payload length. Readers skip stages they don't know.
+ * Times are in nanoseconds. Payload length {@link #REJECTED} means that server was overloaded and rejected the request,
+ * no payload follows such header.
+ */
+@Value
+public class ResponseHeader {
+    private static final int LEGACY_SIZE = 2 * Long.BYTES + Integer.BYTES;
+    private static final ProcessingStage[] STAGES = ProcessingStage.values();
+    public static final int REJECTED = -1;
+
+    private long processingTime;
+    private long sortTime;
+    /**
+     * Null for legacy version.
+     */
+    @Nullable
+    private StageTimings stageTimings;
+    private int payloadSize;
+
+    public static int size(int version) {
+        if (version == Handshake.LEGACY_VERSION) {
+            return LEGACY_SIZE;
+        }
+        return LEGACY_SIZE + Integer.BYTES + STAGES.length * Long.BYTES;
+    }
+
+    public static void write(@NotNull ByteBuffer buffer, int version, @NotNull StageTimings timings,
+                             int payloadSize) {
+        buffer.putLong(timings.getProcessingTime());
+        buffer.putLong(timings.get(ProcessingStage.SORT));
+        if (version != Handshake.LEGACY_VERSION) {
+            buffer.putInt(STAGES.length);
+            for (ProcessingStage stage : STAGES) {
+                buffer.putLong(timings.get(stage));
+            }
+        }
+        buffer.putInt(payloadSize);
+    }
+
+    public static void write(@NotNull DataOutputStream out, int version, @NotNull StageTimings timings,
+                             int payloadSize) throws IOException {
+        out.writeLong(timings.getProcessingTime());
+        out.writeLong(timings.get(ProcessingStage.SORT));
+        if (version != Handshake.LEGACY_VERSION) {
+            out.writeInt(STAGES.length);
+            for (ProcessingStage stage : STAGES) {
+                out.writeLong(timings.get(stage));
+            }
+        }
+        out.writeInt(payloadSize);
+    }
+
+    public boolean isRejected() {
+        return payloadSize == REJECTED;
+    }
+
+    @NotNull
+    public static ResponseHeader read(@NotNull DataInputStream in, int version) throws IOException {
+        long processingTime = in.readLong();
+        long sortTime = in.readLong();
+        StageTimings timings = null;
+        if (version != Handshake.LEGACY_VERSION) {
+            int numberOfStages = in.readInt();
+            if (numberOfStages < 0) {
+                throw new ProtocolException("Negative number of stages: " + numberOfStages);
+            }
+            timings = new StageTimings(0);
+            for (int i = 0; i < numberOfStages; i++) {
+                long time = in.readLong();
+                if (i < STAGES.length) {
+                    timings.set(STAGES[i], time);
+                }
+            }
+        }
+        return new ResponseHeader(processingTime, sortTime, timings, in.readInt());
+    }
+
+    /**
+     * Reads header from buffer which holds at least {@link #size} bytes of the version.
+     */
+    @NotNull
+    public static ResponseHeader read(@NotNull ByteBuffer buffer, int version) throws ProtocolException {
+        long processingTime = buffer.getLong();
+        long sortTime = buffer.getLong();
+        StageTimings timings = null;
+        if (version != Handshake.LEGACY_VERSION) {
+            int numberOfStages = buffer.getInt();
+            if (numberOfStages != STAGES.length) {
+                throw new ProtocolException("Unexpected number of stages: " + numberOfStages);
+            }
+            timings = new StageTimings(0);
+            for (ProcessingStage stage : STAGES) {
+                timings.set(stage, buffer.getLong());
+            }
+        }
+        return new ResponseHeader(processingTime, sortTime, timings, buffer.getInt());
+    }
+}
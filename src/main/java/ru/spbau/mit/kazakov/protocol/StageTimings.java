@@ -0,0 +1,54 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Nanoseconds a single request spent in each processing stage. Filled by server with consecutive laps,
+ * each lap ends the stage which started at the end of the previous one. May be handed between threads
+ * only through a happens-before edge such as executor submission.
+ */
+public class StageTimings {
+    private static final ProcessingStage[] STAGES = ProcessingStage.values();
+    private final long[] times = new long[STAGES.length];
+    private long lastLap;
+
+    /**
+     * Starts timing now.
+     */
+    public StageTimings() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * @param startTime value of {@link System#nanoTime} when the first stage started
+     */
+    public StageTimings(long startTime) {
+        lastLap = startTime;
+    }
+
+    /**
+     * Adds time since the previous lap to specified stage.
+     */
+    public void lap(@NotNull ProcessingStage stage) {
+        long now = System.nanoTime();
+        times[stage.ordinal()] += now - lastLap;
+        lastLap = now;
+    }
+
+    public long get(@NotNull ProcessingStage stage) {
+        return times[stage.ordinal()];
+    }
+
+    public void set(@NotNull ProcessingStage stage, long time) {
+        times[stage.ordinal()] = time;
+    }
+
+    /**
+     * Returns time from receiving the request to serializing the response, i.e. all stages but reading
+     * and waiting to be written.
+     */
+    public long getProcessingTime() {
+        return get(ProcessingStage.DESERIALIZE) + get(ProcessingStage.QUEUE_WAIT) + get(ProcessingStage.SORT)
+                + get(ProcessingStage.SERIALIZE);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.spbau.mit.kazakov.protocol;
+
+import org.jetbrains.annotations.NotNull;
+
+public enum WireFormat {
+    PROTOBUF {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Protobuf";
+        }
+    },
+    RAW {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Raw int32";
+        }
+    },
+    PACKED_PROTOBUF {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Packed protobuf";
+        }
+    },
+    DELTA_PROTOBUF {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Delta protobuf";
+        }
+    };
+
+    private static final ArrayCodec PROTOBUF_CODEC = new ProtobufCodec();
+    private static final ArrayCodec PACKED_PROTOBUF_CODEC = new PackedProtobufCodec();
+    private static final ArrayCodec DELTA_PROTOBUF_CODEC = new DeltaProtobufCodec();
+    private static final ArrayCodec RAW_CODEC = new RawCodec();
+
+    /**
+     * Returns shared stateless codec implementing this format.
+     */
+    @NotNull
+    public ArrayCodec getCodec() {
+        switch (this) {
+            case PACKED_PROTOBUF:
+                return PACKED_PROTOBUF_CODEC;
+            case DELTA_PROTOBUF:
+                return DELTA_PROTOBUF_CODEC;
+            case RAW:
+                return RAW_CODEC;
+            default:
+                return PROTOBUF_CODEC;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package ru.spbau.mit.kazakov.server;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.sort.SortEngine;
+import ru.spbau.mit.kazakov.utils.ChannelReader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Server built on completion handlers of asynchronous channels. Each client is served by a chain
+ * read request, sort it in thread pool, write response, read next request.
+ */
+public class AsyncServer implements Server {
+    private final ExecutorService threadPool;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final AsynchronousChannelGroup channelGroup;
+    private final AsynchronousServerSocketChannel serverSocket;
+
+    public AsyncServer(int port) throws IOException {
+        this(ServerConfig.ofPort(port));
+    }
+
+    /**
+     * @param numberOfIOThreads number of threads in the channel group running completion handlers
+     */
+    public AsyncServer(int port, int numberOfIOThreads) throws IOException {
+        this(ServerConfig.builder().port(port).ioThreads(numberOfIOThreads).build());
+    }
+
+    /**
+     * I/O threads of configuration run completion handlers, worker threads sort arrays.
+     */
+    public AsyncServer(@NotNull ServerConfig config) throws IOException {
+        threadPool = Executors.newFixedThreadPool(config.getWorkerThreads());
+        metrics.watchQueue(threadPool);
+        channelGroup = AsynchronousChannelGroup.withFixedThreadPool(config.getIoThreads(),
+                Executors.defaultThreadFactory());
+        serverSocket = AsynchronousServerSocketChannel.open(channelGroup);
+        serverSocket.bind(config.getAddress());
+    }
+
+    @Override
+    public void start() {
+        serverSocket.accept(null, new AcceptHandler());
+        try {
+            channelGroup.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } catch (InterruptedException ignored) {
+            //nothing to do
+        }
+    }
+
+    @Override
+    @NotNull
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        channelGroup.shutdownNow();
+        threadPool.shutdown();
+    }
+
+    private class AcceptHandler implements CompletionHandler<AsynchronousSocketChannel, Void> {
+        @Override
+        public void completed(@NotNull AsynchronousSocketChannel client, Void attachment) {
+            serverSocket.accept(null, this);
+            metrics.connectionAccepted();
+            new ClientHandler(client).readHandshake();
+        }
+
+        @Override
+        public void failed(@NotNull Throwable exception, Void attachment) {
+            if (serverSocket.isOpen()) {
+                serverSocket.accept(null, this);
+            }
+        }
+    }
+
+    /**
+     * Request-Response cycle of single client.
+     */
+    private class ClientHandler {
+        private final AsynchronousSocketChannel client;
+        private final ByteBuffer size = ByteBuffer.allocate(Integer.BYTES);
+        private ByteBuffer header;
+        private int version;
+        private SortEngine sortEngine;
+        private ArrayCodec codec;
+
+        private ClientHandler(@NotNull AsynchronousSocketChannel client) {
+            this.client = client;
+        }
+
+        private void readHandshake() {
+            ByteBuffer handshake = ByteBuffer.allocate(Handshake.SIZE);
+            readFully(handshake, () -> {
+                handshake.flip();
+                metrics.bytesRead(Handshake.SIZE);
+                Handshake settings = Handshake.read(handshake);
+                sortEngine = settings.getSortAlgorithm().getEngine();
+                codec = settings.getWireFormat().getCodec();
+                version = settings.getVersion();
+                header = ByteBuffer.allocate(ResponseHeader.size(version));
+                readRequest();
+            });
+        }
+
+        private void readRequest() {
+            size.clear();
+            readFully(size, () -> {
+                StageTimings timings = new StageTimings();
+                ByteBuffer data = ByteBuffer.allocate(ChannelReader.checkPacketSize(size.getInt(0)));
+                readFully(data, () -> {
+                    timings.lap(ProcessingStage.READ);
+                    data.flip();
+                    metrics.requestRead(Integer.BYTES + data.remaining());
+                    threadPool.submit(() -> process(data, timings));
+                });
+            });
+        }
+
+        private void process(@NotNull ByteBuffer data, @NotNull StageTimings timings) {
+            try {
+                timings.lap(ProcessingStage.QUEUE_WAIT);
+                int[] array = codec.decode(data);
+                timings.lap(ProcessingStage.DESERIALIZE);
+
+                sortEngine.sort(array);
+                timings.lap(ProcessingStage.SORT);
+
+                ByteBuffer serialized = codec.encode(array);
+                timings.lap(ProcessingStage.SERIALIZE);
+                metrics.requestCompleted(timings.getProcessingTime(), timings.get(ProcessingStage.SORT));
+                header.clear();
+                ResponseHeader.write(header, version, timings, serialized.remaining());
+                header.flip();
+                writeFully(new ByteBuffer[]{header, serialized}, this::readRequest);
+            } catch (IOException exception) {
+                metrics.requestAbandoned();
+                metrics.failed(exception);
+                close();
+            }
+        }
+
+        private void readFully(@NotNull ByteBuffer buffer, @NotNull IOAction next) {
+            client.read(buffer, null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(@NotNull Integer read, Void attachment) {
+                    if (read == -1) {
+                        failed(new EOFException(), null);
+                    } else if (buffer.hasRemaining()) {
+                        client.read(buffer, null, this);
+                    } else {
+                        try {
+                            next.run();
+                        } catch (IOException exception) {
+                            failed(exception, null);
+                        }
+                    }
+                }
+
+                @Override
+                public void failed(@NotNull Throwable exception, Void attachment) {
+                    metrics.failed(exception);
+                    close();
+                }
+            });
+        }
+
+        private void writeFully(@NotNull ByteBuffer[] buffers, @NotNull Runnable next) {
+            client.write(buffers, 0, buffers.length, 0, TimeUnit.MILLISECONDS, null,
+                    new CompletionHandler<Long, Void>() {
+                        @Override
+                        public void completed(@NotNull Long written, Void attachment) {
+                            metrics.bytesWritten(written);
+                            if (buffers[buffers.length - 1].hasRemaining()) {
+                                client.write(buffers, 0, buffers.length, 0, TimeUnit.MILLISECONDS, null, this);
+                            } else {
+                                next.run();
+                            }
+                        }
+
+                        @Override
+                        public void failed(@NotNull Throwable exception, Void attachment) {
+                            metrics.failed(exception);
+                            close();
+                        }
+                    });
+        }
+
+        private void close() {
+            if (!client.isOpen()) {
+                return;
+            }
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+            metrics.connectionClosed();
+        }
+    }
+
+    /**
+     * Continuation of completed I/O operation.
+     */
+    private interface IOAction {
+        void run() throws IOException;
+    }
+}
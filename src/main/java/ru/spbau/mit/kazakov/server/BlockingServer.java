@@ -1,43 +1,84 @@
 package ru.spbau.mit.kazakov.server;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.jetbrains.annotations.NotNull;
-import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
-import ru.spbau.mit.kazakov.utils.ArrayUtils;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.sort.SortEngine;
 
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 
-public class BlockingServer {
-    private static final int NUMBER_OF_THREADS = 4;
+public class BlockingServer implements Server {
     private final ServerSocket serverSocket;
-    private final ExecutorService threadPool = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    private final ExecutorService threadPool;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ResultCache cache;
+    private final Set<ClientHandler> clients = ConcurrentHashMap.newKeySet();
 
     public BlockingServer(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
+        this(ServerConfig.ofPort(port));
     }
 
+    public BlockingServer(@NotNull ServerConfig config) throws IOException {
+        threadPool = WorkerPools.create(config);
+        metrics.watchQueue(threadPool);
+        cache = new ResultCache(config.getCacheCapacity(), metrics);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(config.getAddress());
+    }
+
+    @Override
     public void start() {
-        while (true) {
+        while (!serverSocket.isClosed()) {
             try {
                 Socket clientSocket = serverSocket.accept();
-                new Thread(new ClientHandler(clientSocket)).start();
+                metrics.connectionAccepted();
+                ClientHandler handler = new ClientHandler(clientSocket);
+                clients.add(handler);
+                if (serverSocket.isClosed()) {
+                    handler.stop();
+                }
+                new Thread(handler).start();
             } catch (IOException ignored) {
                 //nothing to do
             }
         }
     }
 
+    @Override
+    @NotNull
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (ClientHandler client : clients) {
+            client.stop();
+        }
+        threadPool.shutdown();
+    }
+
     /**
      * Handles client's requests.
      */
     private class ClientHandler implements Runnable {
         private Socket client;
+        private final ExecutorService writer = Executors.newSingleThreadExecutor();
 
         /**
          * Initializes client's socket.
@@ -51,72 +92,160 @@ public class BlockingServer {
          */
         @Override
         public void run() {
-            ExecutorService writer = Executors.newSingleThreadExecutor();
             try (DataInputStream in = new DataInputStream(client.getInputStream());
-                 DataOutputStream out = new DataOutputStream(client.getOutputStream())) {
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()))) {
+                client.setTcpNoDelay(true);
+                Handshake handshake = Handshake.read(in);
+                metrics.bytesRead(Handshake.SIZE);
+                SortEngine sortEngine = handshake.getSortAlgorithm().getEngine();
+                ArrayCodec codec = handshake.getWireFormat().getCodec();
                 while (true) {
                     int size = in.readInt();
+                    StageTimings timings = new StageTimings();
                     byte[] serializedArray = new byte[size];
 
                     int read = 0;
                     while (read != size) {
                         read += in.read(serializedArray, read, size - read);
                     }
+                    timings.lap(ProcessingStage.READ);
+                    metrics.requestRead(Integer.BYTES + size);
 
-                    StopWatch queryProcessTime = new StopWatch();
-                    queryProcessTime.start();
+                    ResultCache.Lookup lookup = cache.lookup(handshake.getWireFormat(),
+                            ByteBuffer.wrap(serializedArray));
+                    ByteBuffer cached = lookup.getResponse();
+                    if (cached != null) {
+                        //lookup replaces deserialization, cached response bypasses worker pool
+                        timings.lap(ProcessingStage.DESERIALIZE);
+                        writer.submit(() -> writeCachedResponse(out, handshake.getVersion(), timings, cached));
+                        continue;
+                    }
 
-                    ArrayOuterClass.Array array = ArrayOuterClass.Array.parseFrom(serializedArray);
-                    threadPool.submit(new SortQueryHandler(array, writer, out, queryProcessTime));
+                    int[] array = codec.decode(ByteBuffer.wrap(serializedArray));
+                    timings.lap(ProcessingStage.DESERIALIZE);
+                    SortQueryHandler handler = new SortQueryHandler(array, sortEngine, codec, lookup, out,
+                            handshake.getVersion(), timings);
+                    Future<?> sorted;
+                    try {
+                        sorted = threadPool.submit(handler);
+                    } catch (RejectedExecutionException exception) {
+                        if (threadPool.isShutdown()) {
+                            throw exception;
+                        }
+                        metrics.requestRejected();
+                        writer.submit(handler::writeRejection);
+                        continue;
+                    }
+                    //responses are written in the order requests came, whatever order they are sorted in
+                    writer.submit(() -> handler.writeResponse(sorted));
                 }
-            } catch (Exception ignored) {
+            } catch (Exception exception) {
+                metrics.failed(exception);
                 try {
                     client.close();
-                } catch (IOException exception) {
+                } catch (IOException ignored) {
                     //nothing to do
                 }
+                metrics.connectionClosed();
+            } finally {
+                //responses already queued are still written, then writer's thread exits
+                writer.shutdown();
+                clients.remove(this);
+            }
+        }
+
+        /**
+         * Closes client's socket, which makes handler exit, and stops writing responses.
+         */
+        private void stop() {
+            writer.shutdownNow();
+            try {
+                client.close();
+            } catch (IOException ignored) {
+                //nothing to do
             }
         }
     }
 
+    private void writeCachedResponse(@NotNull DataOutputStream out, int version, @NotNull StageTimings timings,
+                                     @NotNull ByteBuffer serializedArray) {
+        try {
+            timings.lap(ProcessingStage.WRITE_QUEUE_WAIT);
+            writePacket(out, version, timings, serializedArray);
+        } catch (IOException ignored) {
+            //connection is closed by client handler
+            metrics.requestAbandoned();
+        }
+    }
+
+    private void writePacket(@NotNull DataOutputStream out, int version, @NotNull StageTimings timings,
+                             @NotNull ByteBuffer serializedArray) throws IOException {
+        ResponseHeader.write(out, version, timings, serializedArray.remaining());
+        out.write(serializedArray.array(), serializedArray.arrayOffset(), serializedArray.remaining());
+        out.flush();
+        metrics.requestCompleted(timings.getProcessingTime(), timings.get(ProcessingStage.SORT));
+        metrics.bytesWritten(ResponseHeader.size(version) + serializedArray.remaining());
+    }
+
     /**
      * Handles sort request.
      */
-    private static class SortQueryHandler implements Runnable {
-        private ArrayOuterClass.Array array;
-        private ExecutorService writer;
+    private class SortQueryHandler implements Runnable {
+        private int[] array;
+        private SortEngine sortEngine;
+        private ArrayCodec codec;
+        private ResultCache.Lookup lookup;
         private DataOutputStream out;
-        private StopWatch queryProcessTime;
+        private int version;
+        private StageTimings timings;
         
-        private SortQueryHandler(@NotNull ArrayOuterClass.Array array, @NotNull ExecutorService writer, 
-                                 @NotNull DataOutputStream out, @NotNull StopWatch queryProcessTime) {
+        private SortQueryHandler(@NotNull int[] array, @NotNull SortEngine sortEngine, @NotNull ArrayCodec codec,
+                                 @NotNull ResultCache.Lookup lookup, @NotNull DataOutputStream out, int version,
+                                 @NotNull StageTimings timings) {
             this.array = array;
-            this.writer = writer;
+            this.sortEngine = sortEngine;
+            this.codec = codec;
+            this.lookup = lookup;
             this.out = out;
-            this.queryProcessTime = queryProcessTime;
+            this.version = version;
+            this.timings = timings;
         }
         
         @Override
         public void run() {
-            int[] intArray = ArrayUtils.toIntArray(array);
-            StopWatch sortTime = new StopWatch();
-            sortTime.start();
-            ArrayUtils.sort(intArray);
-            sortTime.stop();
-            ArrayOuterClass.Array protoArray = ArrayUtils.toProtoArray(intArray);
-            writer.submit(() -> {
-                try {
-                    byte[] serializedArray = protoArray.toByteArray();
-                    queryProcessTime.stop();
-                    out.writeLong(queryProcessTime.getTime(TimeUnit.MILLISECONDS));
-                    out.writeLong(sortTime.getTime(TimeUnit.MILLISECONDS));
-                    out.writeInt(serializedArray.length);
-                    out.write(serializedArray);
-                    out.flush();
-                } catch (IOException ignored) {
-                    //nothing to do
-                }
-            });
+            timings.lap(ProcessingStage.QUEUE_WAIT);
+            sortEngine.sort(array);
+            timings.lap(ProcessingStage.SORT);
+        }
+
+        /**
+         * Waits for sort to finish and writes response.
+         */
+        private void writeResponse(@NotNull Future<?> sorted) {
+            try {
+                sorted.get();
+                timings.lap(ProcessingStage.WRITE_QUEUE_WAIT);
+                ByteBuffer serializedArray = codec.encode(array);
+                timings.lap(ProcessingStage.SERIALIZE);
+                lookup.store(serializedArray);
+                writePacket(out, version, timings, serializedArray);
+            } catch (IOException | InterruptedException | ExecutionException ignored) {
+                //connection is closed by client handler
+                metrics.requestAbandoned();
+            }
+        }
+
+        /**
+         * Writes header telling client that its request was rejected.
+         */
+        private void writeRejection() {
+            try {
+                ResponseHeader.write(out, version, new StageTimings(0), ResponseHeader.REJECTED);
+                out.flush();
+                metrics.bytesWritten(ResponseHeader.size(version));
+            } catch (IOException ignored) {
+                //connection is closed by client handler
+            }
         }
     }
 }
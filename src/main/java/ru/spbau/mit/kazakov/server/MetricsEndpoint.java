@@ -0,0 +1,39 @@
+package ru.spbau.mit.kazakov.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP endpoint serving snapshot of server's metrics as plain text at {@code /metrics}.
+ */
+public class MetricsEndpoint implements Closeable {
+    public static final String PATH = "/metrics";
+    private final HttpServer httpServer;
+
+    /**
+     * Starts serving metrics on a thread of its own.
+     */
+    public MetricsEndpoint(@NotNull ServerMetrics metrics, @NotNull InetSocketAddress address) throws IOException {
+        httpServer = HttpServer.create(address, 0);
+        httpServer.createContext(PATH, exchange -> {
+            byte[] body = metrics.snapshot().toText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+    }
+}
@@ -1,182 +1,424 @@
 package ru.spbau.mit.kazakov.server;
 
-import com.google.protobuf.InvalidProtocolBufferException;
-import org.apache.commons.lang3.time.StopWatch;
 import org.jetbrains.annotations.NotNull;
-import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
-import ru.spbau.mit.kazakov.utils.ArrayUtils;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+import ru.spbau.mit.kazakov.sort.SortEngine;
+import ru.spbau.mit.kazakov.utils.BufferPool;
 import ru.spbau.mit.kazakov.utils.ChannelReader;
 import ru.spbau.mit.kazakov.utils.ChannelWriter;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.nio.Buffer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
 import java.nio.channels.*;
-import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
-public class NonblockingServer {
-    private static final int NUMBER_OF_THREADS = 4;
-    private final ExecutorService threadPool = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
-    private final Map<SocketChannel, Queue<Buffer>> sortedArrayBuffer = new HashMap<>();
+public class NonblockingServer implements Server {
+    private final ThreadPoolExecutor threadPool;
+    private final OverloadPolicy overloadPolicy;
+    private final BufferPool bufferPool = new BufferPool();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ResultCache cache;
     private final ServerSocketChannel serverSocket;
-    private final Selector writableChannels = Selector.open();
-    private final Selector readableChannels = Selector.open();
+    private final ReadCycle readCycle = new ReadCycle();
+    private final WriteCycle writeCycle = new WriteCycle();
+    private long startTime;
 
     public NonblockingServer(int port) throws IOException {
+        this(ServerConfig.ofPort(port));
+    }
+
+    public NonblockingServer(@NotNull ServerConfig config) throws IOException {
+        threadPool = WorkerPools.create(config);
+        overloadPolicy = config.getOverloadPolicy();
+        metrics.watchQueue(threadPool);
+        metrics.watchEventLoopCpuLoad(this::getEventLoopCpuLoad);
+        metrics.watchBufferPool(bufferPool);
+        cache = new ResultCache(config.getCacheCapacity(), metrics);
         serverSocket = ServerSocketChannel.open();
-        serverSocket.socket().bind(new InetSocketAddress(port));
+        serverSocket.socket().bind(config.getAddress());
         serverSocket.configureBlocking(true);
     }
 
+    @Override
     public void start() {
-        new Thread(new ReadCycle()).start();
-        new Thread(new WriteCycle()).start();
+        startTime = System.nanoTime();
+        new Thread(readCycle).start();
+        new Thread(writeCycle).start();
 
-        while (true) {
+        while (serverSocket.isOpen()) {
             try {
                 SocketChannel client = serverSocket.accept();
-                client.configureBlocking(false);
-                synchronized (readableChannels) {
-                    client.register(readableChannels, SelectionKey.OP_READ, new ChannelReader());
+                metrics.connectionAccepted();
+                Handshake handshake;
+                try {
+                    handshake = Handshake.read(client);
+                } catch (IOException exception) {
+                    metrics.failed(exception);
+                    client.close();
+                    metrics.connectionClosed();
+                    continue;
                 }
+                metrics.bytesRead(Handshake.SIZE);
+                client.configureBlocking(false);
+                readCycle.execute(() -> readCycle.register(client, new ClientContext(client, handshake, bufferPool)));
             } catch (IOException ignored) {
                 //nothing to do
             }
         }
     }
 
-    private class ReadCycle implements Runnable {
+    @Override
+    @NotNull
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        readCycle.stop();
+        writeCycle.stop();
+        threadPool.shutdown();
+    }
+
+    /**
+     * Returns share of wall time since start which read and write cycles spent on CPU.
+     * Both cycles block in select when there is nothing to do, so an idle server should report a value close to 0.
+     */
+    public double getEventLoopCpuLoad() {
+        long wallTime = System.nanoTime() - startTime;
+        if (startTime == 0 || wallTime <= 0) {
+            return 0;
+        }
+        return (readCycle.getCpuTime() + writeCycle.getCpuTime()) / (2.0 * wallTime);
+    }
+
+    /**
+     * Thread blocked in select of its own selector. Other threads never touch the selector directly
+     * and pass work to the cycle through {@link #execute}.
+     */
+    private abstract class SelectCycle implements Runnable {
+        private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+        protected final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile Thread thread;
+        private volatile boolean stopped = false;
+
+        private SelectCycle() {
+            try {
+                selector = Selector.open();
+            } catch (IOException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        /**
+         * Schedules task to be run by this cycle and wakes the cycle up.
+         */
+        void execute(@NotNull Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Makes the cycle close its selector and clients' channels and exit.
+         */
+        void stop() {
+            stopped = true;
+            selector.wakeup();
+        }
+
+        long getCpuTime() {
+            Thread current = thread;
+            if (current == null) {
+                return 0;
+            }
+            return Math.max(THREAD_MX_BEAN.getThreadCpuTime(current.threadId()), 0);
+        }
+
         @Override
         public void run() {
-            while (true) {
+            thread = Thread.currentThread();
+            while (!stopped) {
                 try {
-                    Set<SelectionKey> ready;
-                    synchronized (readableChannels) {
-                        int readyChannels = readableChannels.selectNow();
-                        if (readyChannels == 0) {
-                            continue;
-                        }
-                        ready = readableChannels.selectedKeys();
-                    }
-
-                    Iterator<SelectionKey> keyIterator = ready.iterator();
-                    while (keyIterator.hasNext()) {
-                        SelectionKey key = keyIterator.next();
-                        ChannelReader reader = (ChannelReader) key.attachment();
-                        reader.read((ByteChannel) key.channel());
-                        while (reader.isDone()) {
-                            StopWatch queryProcessTime = new StopWatch();
-                            queryProcessTime.start();
-                            threadPool.submit(new SortTask(key.channel(), reader.getData(), queryProcessTime));
-                            reader.clear();
-                            reader.read((ByteChannel) key.channel());
-                        }
-                        keyIterator.remove();
-                    }
+                    selector.select();
                 } catch (IOException ignored) {
                     //nothing to do
                 }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    ClientContext context = (ClientContext) key.attachment();
+                    try {
+                        handle(key, context);
+                    } catch (IOException | CancelledKeyException exception) {
+                        metrics.failed(exception);
+                        key.cancel();
+                        close(context);
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                close((ClientContext) key.attachment());
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+
+        protected abstract void handle(@NotNull SelectionKey key, @NotNull ClientContext context) throws IOException;
+
+        void register(@NotNull SocketChannel client, @NotNull ClientContext context, int interestOps) {
+            try {
+                client.register(selector, interestOps, context);
+            } catch (ClosedChannelException ignored) {
+                //nothing to do
             }
         }
     }
 
-    private class WriteCycle implements Runnable {
+    private class ReadCycle extends SelectCycle {
+        /**
+         * Keys of clients which aren't read from until queue of sort tasks has free space.
+         */
+        private final Queue<SelectionKey> pausedKeys = new ConcurrentLinkedQueue<>();
+
+        void register(@NotNull SocketChannel client, @NotNull ClientContext context) {
+            register(client, context, SelectionKey.OP_READ);
+        }
+
         @Override
-        public void run() {
-            while (true) {
-                try {
-                    Set<SelectionKey> ready;
-                    synchronized (writableChannels) {
-                        int readyChannels = writableChannels.selectNow();
-                        if (readyChannels == 0) {
-                            continue;
-                        }
-                        ready = writableChannels.selectedKeys();
-                    }
+        protected void handle(@NotNull SelectionKey key, @NotNull ClientContext context) throws IOException {
+            ChannelReader reader = context.reader;
+            if (pauseIfOverloaded(key)) {
+                return;
+            }
+            reader.read(context.channel);
+            while (reader.isDone()) {
+                StageTimings timings = new StageTimings(reader.getFrameStartTime());
+                timings.lap(ProcessingStage.READ);
+                ByteBuffer data = reader.getData();
+                metrics.requestRead(Integer.BYTES + data.remaining());
+                submit(context, context.requestsRead++, data, timings);
+                reader.clear();
+                if (pauseIfOverloaded(key)) {
+                    return;
+                }
+                reader.read(context.channel);
+            }
+            if (reader.isEndOfStream()) {
+                key.cancel();
+                close(context);
+            }
+        }
 
-                    Iterator<SelectionKey> keyIterator = ready.iterator();
-                    while (keyIterator.hasNext()) {
-                        SelectionKey key = keyIterator.next();
-                        ChannelWriter writer = (ChannelWriter) key.attachment();
-                        SelectableChannel channel = key.channel();
-
-                        synchronized (channel) {
-                            writer.write((ByteChannel) channel);
-                            if (writer.isDone()) {
-                                synchronized (writableChannels) {
-                                    //key.cancel(); may cause CancelledKeyException when register the channel next time
-                                    key.interestOps(0);
-                                }
-                            }
-                        }
-
-                        keyIterator.remove();
-                    }
-                } catch (IOException ignored) {
-                    //nothing to do
+        /**
+         * Wakes the cycle up to resume reading from paused clients if there are any.
+         * Called by worker threads after taking a task from the queue.
+         */
+        void onQueueSpaceFreed() {
+            if (!pausedKeys.isEmpty()) {
+                execute(this::resumeReading);
+            }
+        }
+
+        private void submit(@NotNull ClientContext context, long sequenceNumber, @NotNull ByteBuffer data,
+                            @NotNull StageTimings timings) {
+            try {
+                threadPool.execute(new SortTask(context, sequenceNumber, data, timings));
+            } catch (RejectedExecutionException exception) {
+                bufferPool.release(data);
+                if (threadPool.isShutdown()) {
+                    metrics.requestAbandoned();
+                    return;
+                }
+                metrics.requestRejected();
+                writeCycle.execute(() -> writeCycle.addRejection(context, sequenceNumber));
+            }
+        }
+
+        /**
+         * Stops reading from client if queue of sort tasks is full and policy says so.
+         *
+         * @return true if client has been paused
+         */
+        private boolean pauseIfOverloaded(@NotNull SelectionKey key) {
+            if (overloadPolicy != OverloadPolicy.PAUSE_READING || !isQueueFull()) {
+                return false;
+            }
+            key.interestOps(0);
+            pausedKeys.add(key);
+            //worker may have freed space before it could see the key paused
+            if (!isQueueFull()) {
+                resumeReading();
+                return false;
+            }
+            return true;
+        }
+
+        private void resumeReading() {
+            SelectionKey key;
+            while ((key = pausedKeys.poll()) != null) {
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
                 }
             }
         }
+
+        private boolean isQueueFull() {
+            return threadPool.getQueue().remainingCapacity() == 0;
+        }
+    }
+
+    private class WriteCycle extends SelectCycle {
+        /**
+         * Queues response of client and subscribes for client's writability.
+         */
+        void addResponse(@NotNull ClientContext context, long sequenceNumber, @NotNull StageTimings timings,
+                         @NotNull ByteBuffer serialized) {
+            context.writer.addResponse(sequenceNumber, timings, serialized);
+            subscribe(context);
+        }
+
+        /**
+         * Queues rejection of client's request and subscribes for client's writability.
+         */
+        void addRejection(@NotNull ClientContext context, long sequenceNumber) {
+            context.writer.addRejection(sequenceNumber);
+            subscribe(context);
+        }
+
+        private void subscribe(@NotNull ClientContext context) {
+            SelectionKey key = context.channel.keyFor(selector);
+            if (key == null) {
+                register(context.channel, context, SelectionKey.OP_WRITE);
+            } else if (key.isValid()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        @Override
+        protected void handle(@NotNull SelectionKey key, @NotNull ClientContext context) throws IOException {
+            ChannelWriter writer = context.writer;
+            metrics.bytesWritten(writer.write(context.channel));
+            if (writer.isDone()) {
+                //key.cancel(); may cause CancelledKeyException when register the channel next time
+                key.interestOps(0);
+            }
+        }
+    }
+
+    /**
+     * Closes client's channel. Both cycles may close the same client, it is counted once.
+     */
+    private void close(@NotNull ClientContext context) {
+        if (!context.closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            context.channel.close();
+        } catch (IOException ignored) {
+            //nothing to do
+        }
+        metrics.connectionClosed();
+    }
+
+    /**
+     * State of accepted client. Reader is accessed by read cycle only, writer by write cycle only.
+     */
+    private static class ClientContext {
+        private final SocketChannel channel;
+        private final ChannelReader reader;
+        private final ChannelWriter writer;
+        private final SortEngine sortEngine;
+        private final WireFormat wireFormat;
+        private final ArrayCodec codec;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private long requestsRead = 0;
+
+        private ClientContext(@NotNull SocketChannel channel, @NotNull Handshake handshake,
+                              @NotNull BufferPool bufferPool) {
+            this.channel = channel;
+            reader = new ChannelReader(bufferPool);
+            writer = new ChannelWriter(bufferPool, handshake.getVersion());
+            sortEngine = handshake.getSortAlgorithm().getEngine();
+            wireFormat = handshake.getWireFormat();
+            codec = wireFormat.getCodec();
+        }
     }
 
     private class SortTask implements Runnable {
-        private final SelectableChannel client;
-        private final byte[] data;
-        private final StopWatch queryProcessTime;
+        private final ClientContext context;
+        private final long sequenceNumber;
+        private final ByteBuffer data;
+        private final StageTimings timings;
 
-        private SortTask(@NotNull SelectableChannel client, @NotNull byte[] data, @NotNull StopWatch queryProcessTime) {
-            this.client = client;
+        private SortTask(@NotNull ClientContext context, long sequenceNumber, @NotNull ByteBuffer data,
+                         @NotNull StageTimings timings) {
+            this.context = context;
+            this.sequenceNumber = sequenceNumber;
             this.data = data;
-            this.queryProcessTime = queryProcessTime;
+            this.timings = timings;
         }
 
         @Override
         public void run() {
+            readCycle.onQueueSpaceFreed();
             try {
-                ArrayOuterClass.Array protoArray = ArrayOuterClass.Array.parseFrom(data);
-                int[] array = ArrayUtils.toIntArray(protoArray);
-
-                StopWatch sortTime = new StopWatch();
-                sortTime.start();
-                ArrayUtils.sort(array);
-                sortTime.stop();
-
-                ArrayOuterClass.Array sorted = ArrayUtils.toProtoArray(array);
-                byte[] serialized = sorted.toByteArray();
-
-                synchronized (client) {
-                    synchronized (writableChannels) {
-                        SelectionKey key = client.keyFor(writableChannels);
-                        ChannelWriter writer;
-
-                        if (key == null) {
-                            writer = new ChannelWriter();
-                            try {
-                                client.register(writableChannels, SelectionKey.OP_WRITE, writer);
-                            } catch (ClosedChannelException ignored) {
-                                //nothing to do
-                            }
-                        } else {
-                            key.interestOps(SelectionKey.OP_WRITE);
-                            writer = (ChannelWriter) key.attachment();
-                        }
-
-                        queryProcessTime.stop();
-                        writer.addData(queryProcessTime.getTime(TimeUnit.MILLISECONDS));
-                        writer.addData(sortTime.getTime(TimeUnit.MILLISECONDS));
-                        writer.addData(serialized.length);
-                        writer.addData(serialized);
+                timings.lap(ProcessingStage.QUEUE_WAIT);
+                //looked up by worker so that hashing large requests doesn't hold up read cycle
+                ResultCache.Lookup lookup = cache.lookup(context.wireFormat, data);
+                ByteBuffer serialized = lookup.getResponse();
+                if (serialized != null) {
+                    bufferPool.release(data);
+                    timings.lap(ProcessingStage.DESERIALIZE);
+                } else {
+                    int[] array;
+                    try {
+                        array = context.codec.decode(data);
+                    } finally {
+                        bufferPool.release(data);
                     }
+                    timings.lap(ProcessingStage.DESERIALIZE);
+
+                    context.sortEngine.sort(array);
+                    timings.lap(ProcessingStage.SORT);
+
+                    serialized = context.codec.encode(array, bufferPool);
+                    timings.lap(ProcessingStage.SERIALIZE);
+                    lookup.store(serialized);
                 }
-            } catch (InvalidProtocolBufferException ignored) {
-                //nothing to do
+                ByteBuffer response = serialized;
+                metrics.requestCompleted(timings.getProcessingTime(), timings.get(ProcessingStage.SORT));
+                writeCycle.execute(() -> writeCycle.addResponse(context, sequenceNumber, timings, response));
+            } catch (IOException exception) {
+                metrics.requestAbandoned();
+                metrics.failed(exception);
+                //its sequence number will never be answered, so responses to later requests would wait forever
+                writeCycle.execute(() -> close(context));
             }
         }
     }
-
-
 }
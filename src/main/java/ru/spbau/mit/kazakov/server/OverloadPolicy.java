@@ -0,0 +1,40 @@
+package ru.spbau.mit.kazakov.server;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * What server does with a request when queue of sort tasks is full.
+ */
+public enum OverloadPolicy {
+    /**
+     * Thread which read the request waits for free space in queue.
+     */
+    BLOCK {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Block reader";
+        }
+    },
+    /**
+     * Server stops reading from client until there is free space in queue. Servers reading in a thread
+     * per client do so by blocking, which makes it the same as {@link #BLOCK}.
+     */
+    PAUSE_READING {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Pause reading";
+        }
+    },
+    /**
+     * Request is answered with rejection header without payload.
+     */
+    REJECT {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Reject";
+        }
+    }
+}
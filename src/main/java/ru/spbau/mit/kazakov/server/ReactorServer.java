@@ -0,0 +1,311 @@
+package ru.spbau.mit.kazakov.server;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.sort.SortEngine;
+import ru.spbau.mit.kazakov.utils.BufferPool;
+import ru.spbau.mit.kazakov.utils.ChannelReader;
+import ru.spbau.mit.kazakov.utils.ChannelWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Nonblocking server with several event loops, each owning its own selector.
+ * Accepted clients are assigned to event loops in round-robin order and are both read and written by their loop.
+ */
+public class ReactorServer implements Server {
+    private final ExecutorService threadPool;
+    private final BufferPool bufferPool = new BufferPool();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ServerSocketChannel serverSocket;
+    private final EventLoop[] eventLoops;
+
+    public ReactorServer(int port) throws IOException {
+        this(ServerConfig.ofPort(port));
+    }
+
+    public ReactorServer(int port, int numberOfEventLoops) throws IOException {
+        this(ServerConfig.builder().port(port).ioThreads(numberOfEventLoops).build());
+    }
+
+    /**
+     * Starts one event loop per I/O thread of configuration.
+     */
+    public ReactorServer(@NotNull ServerConfig config) throws IOException {
+        int numberOfEventLoops = config.getIoThreads();
+        if (numberOfEventLoops <= 0) {
+            throw new IllegalArgumentException();
+        }
+        threadPool = Executors.newFixedThreadPool(config.getWorkerThreads());
+        metrics.watchQueue(threadPool);
+        metrics.watchBufferPool(bufferPool);
+
+        eventLoops = new EventLoop[numberOfEventLoops];
+        for (int i = 0; i < numberOfEventLoops; i++) {
+            eventLoops[i] = new EventLoop();
+        }
+
+        serverSocket = ServerSocketChannel.open();
+        serverSocket.socket().bind(config.getAddress());
+        serverSocket.configureBlocking(true);
+    }
+
+    @Override
+    public void start() {
+        for (EventLoop eventLoop : eventLoops) {
+            new Thread(eventLoop).start();
+        }
+
+        int nextEventLoop = 0;
+        while (serverSocket.isOpen()) {
+            try {
+                SocketChannel client = serverSocket.accept();
+                metrics.connectionAccepted();
+                Handshake handshake;
+                try {
+                    handshake = Handshake.read(client);
+                } catch (IOException exception) {
+                    metrics.failed(exception);
+                    client.close();
+                    metrics.connectionClosed();
+                    continue;
+                }
+                metrics.bytesRead(Handshake.SIZE);
+                client.configureBlocking(false);
+
+                EventLoop eventLoop = eventLoops[nextEventLoop];
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+                eventLoop.execute(() -> eventLoop.register(client, handshake));
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+    }
+
+    @Override
+    @NotNull
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.stop();
+        }
+        threadPool.shutdown();
+    }
+
+    /**
+     * Single-threaded loop serving I/O of its clients. Other threads pass work to it through {@link #execute}.
+     */
+    private class EventLoop implements Runnable {
+        private final Selector selector = Selector.open();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean stopped = false;
+
+        private EventLoop() throws IOException {
+        }
+
+        /**
+         * Makes the loop close its selector and clients' channels and exit.
+         */
+        private void stop() {
+            stopped = true;
+            selector.wakeup();
+        }
+
+        /**
+         * Schedules task to be run by this loop and wakes the loop up.
+         */
+        private void execute(@NotNull Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (!stopped) {
+                try {
+                    selector.select();
+                } catch (IOException ignored) {
+                    //nothing to do
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    ClientContext context = (ClientContext) key.attachment();
+
+                    try {
+                        if (key.isReadable()) {
+                            read(context);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(context);
+                        }
+                    } catch (IOException | CancelledKeyException exception) {
+                        metrics.failed(exception);
+                        close(context);
+                    }
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                close((ClientContext) key.attachment());
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+
+        private void register(@NotNull SocketChannel client, @NotNull Handshake handshake) {
+            try {
+                ClientContext context = new ClientContext(this, client, handshake, bufferPool);
+                context.key = client.register(selector, SelectionKey.OP_READ, context);
+            } catch (ClosedChannelException ignored) {
+                //nothing to do
+            }
+        }
+
+        private void read(@NotNull ClientContext context) throws IOException {
+            ChannelReader reader = context.reader;
+            reader.read(context.channel);
+            while (reader.isDone()) {
+                StageTimings timings = new StageTimings(reader.getFrameStartTime());
+                timings.lap(ProcessingStage.READ);
+                ByteBuffer data = reader.getData();
+                metrics.requestRead(Integer.BYTES + data.remaining());
+                threadPool.submit(new SortTask(context, context.requestsRead++, data, timings));
+                reader.clear();
+                reader.read(context.channel);
+            }
+            if (reader.isEndOfStream()) {
+                close(context);
+            }
+        }
+
+        private void write(@NotNull ClientContext context) throws IOException {
+            metrics.bytesWritten(context.writer.write(context.channel));
+            if (context.writer.isDone()) {
+                context.key.interestOps(SelectionKey.OP_READ);
+            } else {
+                context.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void close(@NotNull ClientContext context) {
+            context.key.cancel();
+            if (!context.channel.isOpen()) {
+                return;
+            }
+            try {
+                context.channel.close();
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+            metrics.connectionClosed();
+        }
+    }
+
+    /**
+     * State of accepted client. Reader and writer are accessed by owning event loop only.
+     */
+    private static class ClientContext {
+        private final EventLoop eventLoop;
+        private final SocketChannel channel;
+        private final ChannelReader reader;
+        private final ChannelWriter writer;
+        private final SortEngine sortEngine;
+        private final ArrayCodec codec;
+        private SelectionKey key;
+        private long requestsRead = 0;
+
+        private ClientContext(@NotNull EventLoop eventLoop, @NotNull SocketChannel channel,
+                              @NotNull Handshake handshake, @NotNull BufferPool bufferPool) {
+            this.eventLoop = eventLoop;
+            this.channel = channel;
+            reader = new ChannelReader(bufferPool);
+            writer = new ChannelWriter(bufferPool, handshake.getVersion());
+            sortEngine = handshake.getSortAlgorithm().getEngine();
+            codec = handshake.getWireFormat().getCodec();
+        }
+    }
+
+    private class SortTask implements Runnable {
+        private final ClientContext context;
+        private final long sequenceNumber;
+        private final ByteBuffer data;
+        private final StageTimings timings;
+
+        private SortTask(@NotNull ClientContext context, long sequenceNumber, @NotNull ByteBuffer data,
+                         @NotNull StageTimings timings) {
+            this.context = context;
+            this.sequenceNumber = sequenceNumber;
+            this.data = data;
+            this.timings = timings;
+        }
+
+        @Override
+        public void run() {
+            try {
+                timings.lap(ProcessingStage.QUEUE_WAIT);
+                int[] array;
+                try {
+                    array = context.codec.decode(data);
+                } finally {
+                    bufferPool.release(data);
+                }
+                timings.lap(ProcessingStage.DESERIALIZE);
+
+                context.sortEngine.sort(array);
+                timings.lap(ProcessingStage.SORT);
+
+                ByteBuffer serialized = context.codec.encode(array, bufferPool);
+                timings.lap(ProcessingStage.SERIALIZE);
+                EventLoop eventLoop = context.eventLoop;
+                eventLoop.execute(() -> {
+                    if (!context.key.isValid()) {
+                        metrics.requestAbandoned();
+                        return;
+                    }
+
+                    metrics.requestCompleted(timings.getProcessingTime(), timings.get(ProcessingStage.SORT));
+                    context.writer.addResponse(sequenceNumber, timings, serialized);
+                    try {
+                        eventLoop.write(context);
+                    } catch (IOException exception) {
+                        metrics.failed(exception);
+                        eventLoop.close(context);
+                    }
+                });
+            } catch (IOException exception) {
+                metrics.requestAbandoned();
+                metrics.failed(exception);
+                //its sequence number will never be answered, so responses to later requests would wait forever
+                EventLoop eventLoop = context.eventLoop;
+                eventLoop.execute(() -> eventLoop.close(context));
+            }
+        }
+    }
+}
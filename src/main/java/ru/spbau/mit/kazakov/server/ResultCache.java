@@ -0,0 +1,159 @@
+package ru.spbau.mit.kazakov.server;
+
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.mit.kazakov.protocol.WireFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Serialized responses of recently answered requests. Requests are looked up by a hash of their serialized
+ * content and wire format, and compared byte by byte on hit. Least recently used entries are evicted once
+ * total size of stored requests and responses exceeds capacity. Thread-safe.
+ */
+class ResultCache {
+    /**
+     * Approximate size of objects of an entry besides its data.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final long FINAL_MULTIPLIER = 0xFF51AFD7ED558CCDL;
+
+    private final long capacity;
+    private final ServerMetrics metrics;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * @param capacity memory budget in bytes, 0 disables the cache
+     */
+    ResultCache(long capacity, @NotNull ServerMetrics metrics) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Looks up response to specified serialized request. Disabled cache neither hashes requests nor counts misses.
+     */
+    @NotNull
+    Lookup lookup(@NotNull WireFormat wireFormat, @NotNull ByteBuffer request) {
+        if (capacity == 0) {
+            return new Lookup(null, null, null);
+        }
+
+        Key key = new Key(wireFormat, hash(request));
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.request.equals(request)) {
+            metrics.cacheHit();
+            return new Lookup(key, null, entry.response);
+        }
+        metrics.cacheMiss();
+        return new Lookup(key, copy(request), null);
+    }
+
+    /**
+     * 64-bit multiplicative hash of remaining bytes, 8 bytes per step.
+     */
+    private static long hash(@NotNull ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long hash = buffer.remaining() * MULTIPLIER;
+        while (buffer.remaining() >= Long.BYTES) {
+            hash = Long.rotateLeft(hash ^ buffer.getLong() * MULTIPLIER, 31) * MULTIPLIER;
+        }
+        while (buffer.hasRemaining()) {
+            hash = Long.rotateLeft(hash ^ buffer.get() * MULTIPLIER, 31) * MULTIPLIER;
+        }
+        hash ^= hash >>> 33;
+        hash *= FINAL_MULTIPLIER;
+        return hash ^ hash >>> 33;
+    }
+
+    private synchronized void put(@NotNull Key key, @NotNull Entry entry) {
+        if (entry.size > capacity) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            size -= previous.size;
+        }
+        size += entry.size;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > capacity) {
+            size -= eldest.next().size;
+            eldest.remove();
+            metrics.cacheEvicted();
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer copy(@NotNull ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Result of looking up a single request.
+     */
+    class Lookup {
+        private final Key key;
+        private final ByteBuffer request;
+        private final ByteBuffer response;
+
+        private Lookup(@Nullable Key key, @Nullable ByteBuffer request, @Nullable ByteBuffer response) {
+            this.key = key;
+            this.request = request;
+            this.response = response;
+        }
+
+        /**
+         * Returns heap buffer with cached serialized response, it is shared and must not be modified.
+         *
+         * @return null on miss
+         */
+        @Nullable
+        ByteBuffer getResponse() {
+            return response == null ? null : response.duplicate();
+        }
+
+        /**
+         * Stores serialized response to the request looked up. Does nothing on hit or if cache is disabled.
+         * Remaining bytes of the buffer are copied, its position isn't changed.
+         */
+        void store(@NotNull ByteBuffer response) {
+            if (request == null) {
+                return;
+            }
+            put(key, new Entry(request, copy(response)));
+        }
+    }
+
+    @Value
+    private static class Key {
+        private WireFormat wireFormat;
+        private long hash;
+    }
+
+    private static class Entry {
+        private final ByteBuffer request;
+        private final ByteBuffer response;
+        private final long size;
+
+        private Entry(@NotNull ByteBuffer request, @NotNull ByteBuffer response) {
+            this.request = request;
+            this.response = response;
+            size = request.capacity() + response.capacity() + ENTRY_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.spbau.mit.kazakov.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sort server of one of the tested architectures.
+ */
+public interface Server extends Closeable {
+    /**
+     * Accepts and serves clients. Doesn't return until the server is closed.
+     */
+    void start();
+
+    /**
+     * Returns live counters of the server.
+     */
+    @NotNull
+    ServerMetrics getMetrics();
+
+    /**
+     * Stops accepting clients and releases server's threads. Returns without waiting for
+     * connected clients to be served.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,62 @@
+package ru.spbau.mit.kazakov.server;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Listening address and thread counts of a server.
+ */
+@Value
+@Builder
+public class ServerConfig {
+    public static final String ANY_HOST = "0.0.0.0";
+    public static final int DEFAULT_WORKER_THREADS = 4;
+    public static final int UNBOUNDED = 0;
+
+    /**
+     * Address to bind to, all interfaces by default.
+     */
+    @Builder.Default
+    private String host = ANY_HOST;
+    private int port;
+    /**
+     * Size of pool sorting arrays. Ignored by servers sorting in client's thread.
+     */
+    @Builder.Default
+    private int workerThreads = DEFAULT_WORKER_THREADS;
+    /**
+     * Number of threads serving I/O: event loops of reactor or channel group threads of asynchronous server.
+     * Ignored by other architectures.
+     */
+    @Builder.Default
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Capacity of queue of sort tasks waiting for a worker thread, {@link #UNBOUNDED} by default.
+     * Respected by blocking and nonblocking servers only.
+     */
+    @Builder.Default
+    private int queueCapacity = UNBOUNDED;
+    /**
+     * What server does when queue of sort tasks is full.
+     */
+    @Builder.Default
+    private OverloadPolicy overloadPolicy = OverloadPolicy.BLOCK;
+    /**
+     * Memory budget in bytes of cache of serialized responses to repeated requests, 0 by default which disables
+     * the cache. Respected by simple, blocking and nonblocking servers only.
+     */
+    private int cacheCapacity;
+
+    /**
+     * Returns configuration listening to specified port on all interfaces with default thread counts.
+     */
+    public static ServerConfig ofPort(int port) {
+        return ServerConfig.builder().port(port).build();
+    }
+
+    public InetSocketAddress getAddress() {
+        return new InetSocketAddress(host, port);
+    }
+}
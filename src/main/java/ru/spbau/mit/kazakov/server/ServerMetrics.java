@@ -0,0 +1,304 @@
+package ru.spbau.mit.kazakov.server;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.utils.BufferPool;
+
+import javax.management.*;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ProtocolException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free counters updated by server's threads while serving clients.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LongAdder acceptedConnections = new LongAdder();
+    private final LongAdder closedConnections = new LongAdder();
+    private final LongAdder requestsInProgress = new LongAdder();
+    private final LongAdder completedRequests = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder ioErrors = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+    private final Histogram processingTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Histogram sortTimes = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private volatile IntSupplier queueLength = () -> 0;
+    private volatile DoubleSupplier eventLoopCpuLoad = () -> 0;
+    private volatile LongSupplier bufferPoolHits = () -> 0;
+    private volatile LongSupplier bufferPoolMisses = () -> 0;
+
+    /**
+     * Makes queue length report number of tasks waiting in specified pool.
+     */
+    public void watchQueue(@NotNull ExecutorService threadPool) {
+        if (threadPool instanceof ThreadPoolExecutor) {
+            queueLength = ((ThreadPoolExecutor) threadPool).getQueue()::size;
+        }
+    }
+
+    /**
+     * Makes event loop CPU load report value of specified supplier.
+     */
+    public void watchEventLoopCpuLoad(@NotNull DoubleSupplier cpuLoad) {
+        eventLoopCpuLoad = cpuLoad;
+    }
+
+    /**
+     * Makes buffer pool hits and misses report counters of specified pool.
+     */
+    public void watchBufferPool(@NotNull BufferPool bufferPool) {
+        bufferPoolHits = bufferPool::getHits;
+        bufferPoolMisses = bufferPool::getMisses;
+    }
+
+    public void connectionAccepted() {
+        acceptedConnections.increment();
+    }
+
+    public void connectionClosed() {
+        closedConnections.increment();
+    }
+
+    /**
+     * Counts request of specified size in bytes, length prefix included, which has been read completely.
+     */
+    public void requestRead(long size) {
+        bytesRead.add(size);
+        requestsInProgress.increment();
+    }
+
+    /**
+     * Counts answered request.
+     *
+     * @param processingTime nanoseconds from reading request to serializing response
+     * @param sortTime       nanoseconds spent sorting
+     */
+    public void requestCompleted(long processingTime, long sortTime) {
+        requestsInProgress.decrement();
+        completedRequests.increment();
+        processingTimes.recordValue(Math.max(processingTime, 0));
+        sortTimes.recordValue(Math.max(sortTime, 0));
+    }
+
+    /**
+     * Counts request which was read but won't be answered.
+     */
+    public void requestAbandoned() {
+        requestsInProgress.decrement();
+    }
+
+    /**
+     * Counts request which was read but rejected because queue of sort tasks was full.
+     */
+    public void requestRejected() {
+        requestsInProgress.decrement();
+        rejectedRequests.increment();
+    }
+
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    public void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    public void cacheEvicted() {
+        cacheEvictions.increment();
+    }
+
+    public void bytesRead(long size) {
+        bytesRead.add(size);
+    }
+
+    public void bytesWritten(long size) {
+        bytesWritten.add(size);
+    }
+
+    /**
+     * Counts failure which broke a connection. Malformed data counts as parse failure, peer closing
+     * the connection isn't counted, other I/O exceptions count as I/O errors.
+     */
+    public void failed(@NotNull Throwable exception) {
+        if (exception instanceof ProtocolException || exception instanceof InvalidProtocolBufferException) {
+            parseFailures.increment();
+        } else if (exception instanceof IOException && !(exception instanceof EOFException)
+                && !(exception instanceof ClosedChannelException)) {
+            ioErrors.increment();
+        }
+    }
+
+    /**
+     * Registers metrics in platform MBean server under name of the server listening to specified port.
+     */
+    @NotNull
+    public ObjectName register(int port) throws JMException {
+        ObjectName name = new ObjectName("ru.spbau.mit.kazakov:type=ServerMetrics,port=" + port);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    @NotNull
+    public ServerMetricsSnapshot snapshot() {
+        return ServerMetricsSnapshot.builder()
+                .acceptedConnections(getAcceptedConnections())
+                .closedConnections(getClosedConnections())
+                .requestsInProgress(getRequestsInProgress())
+                .completedRequests(getCompletedRequests())
+                .queueLength(getQueueLength())
+                .bytesRead(getBytesRead())
+                .bytesWritten(getBytesWritten())
+                .parseFailures(getParseFailures())
+                .ioErrors(getIoErrors())
+                .rejectedRequests(getRejectedRequests())
+                .cacheHits(getCacheHits())
+                .cacheMisses(getCacheMisses())
+                .cacheEvictions(getCacheEvictions())
+                .processingTimeMean(getProcessingTimeMean())
+                .processingTimeP99(getProcessingTimeP99())
+                .processingTimeMax(getProcessingTimeMax())
+                .sortTimeMean(getSortTimeMean())
+                .sortTimeP99(getSortTimeP99())
+                .sortTimeMax(getSortTimeMax())
+                .eventLoopCpuLoad(getEventLoopCpuLoad())
+                .bufferPoolHits(getBufferPoolHits())
+                .bufferPoolMisses(getBufferPoolMisses())
+                .build();
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return acceptedConnections.sum();
+    }
+
+    @Override
+    public long getClosedConnections() {
+        return closedConnections.sum();
+    }
+
+    @Override
+    public long getRequestsInProgress() {
+        return requestsInProgress.sum();
+    }
+
+    @Override
+    public long getCompletedRequests() {
+        return completedRequests.sum();
+    }
+
+    @Override
+    public long getQueueLength() {
+        return queueLength.getAsInt();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getIoErrors() {
+        return ioErrors.sum();
+    }
+
+    @Override
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return cacheEvictions.sum();
+    }
+
+    @Override
+    public double getProcessingTimeMean() {
+        return mean(processingTimes);
+    }
+
+    @Override
+    public double getProcessingTimeP99() {
+        return processingTimes.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getProcessingTimeMax() {
+        return processingTimes.getMaxValue() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSortTimeMean() {
+        return mean(sortTimes);
+    }
+
+    @Override
+    public double getSortTimeP99() {
+        return sortTimes.getValueAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getSortTimeMax() {
+        return sortTimes.getMaxValue() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getEventLoopCpuLoad() {
+        return eventLoopCpuLoad.getAsDouble();
+    }
+
+    @Override
+    public long getBufferPoolHits() {
+        return bufferPoolHits.getAsLong();
+    }
+
+    @Override
+    public long getBufferPoolMisses() {
+        return bufferPoolMisses.getAsLong();
+    }
+
+    private static double mean(@NotNull Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return 0;
+        }
+        return histogram.getMean() / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.spbau.mit.kazakov.server;
+
+/**
+ * Live counters of a server exposed through JMX. Times are in milliseconds.
+ */
+public interface ServerMetricsMXBean {
+    long getAcceptedConnections();
+
+    long getClosedConnections();
+
+    /**
+     * Returns number of requests read and not yet answered.
+     */
+    long getRequestsInProgress();
+
+    long getCompletedRequests();
+
+    /**
+     * Returns number of sort tasks waiting for a worker thread.
+     */
+    long getQueueLength();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    /**
+     * Returns number of malformed handshakes and requests.
+     */
+    long getParseFailures();
+
+    /**
+     * Returns number of connections broken by I/O errors other than peer closing the connection.
+     */
+    long getIoErrors();
+
+    /**
+     * Returns number of requests rejected because queue of sort tasks was full.
+     */
+    long getRejectedRequests();
+
+    /**
+     * Returns number of requests answered from result cache.
+     */
+    long getCacheHits();
+
+    /**
+     * Returns number of requests which were looked up in result cache and not found.
+     */
+    long getCacheMisses();
+
+    long getCacheEvictions();
+
+    double getProcessingTimeMean();
+
+    double getProcessingTimeP99();
+
+    double getProcessingTimeMax();
+
+    double getSortTimeMean();
+
+    double getSortTimeP99();
+
+    double getSortTimeMax();
+
+    /**
+     * Returns share of wall time since start which server's event loop threads spent on CPU,
+     * 0 for servers without event loops.
+     */
+    double getEventLoopCpuLoad();
+
+    /**
+     * Returns number of I/O buffers served by server's buffer pool, 0 for servers without one.
+     */
+    long getBufferPoolHits();
+
+    /**
+     * Returns number of I/O buffers server's buffer pool had to allocate.
+     */
+    long getBufferPoolMisses();
+}
@@ -0,0 +1,113 @@
+package ru.spbau.mit.kazakov.server;
+
+import lombok.Builder;
+import lombok.Value;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.ProtocolException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values of server's counters at some moment. Counters are cumulative since server start, times are in milliseconds.
+ */
+@Value
+@Builder
+public class ServerMetricsSnapshot {
+    private static final String PREFIX = "sort_server_";
+
+    private long acceptedConnections;
+    private long closedConnections;
+    private long requestsInProgress;
+    private long completedRequests;
+    private long queueLength;
+    private long bytesRead;
+    private long bytesWritten;
+    private long parseFailures;
+    private long ioErrors;
+    private long rejectedRequests;
+    private long cacheHits;
+    private long cacheMisses;
+    private long cacheEvictions;
+    private double processingTimeMean;
+    private double processingTimeP99;
+    private double processingTimeMax;
+    private double sortTimeMean;
+    private double sortTimeP99;
+    private double sortTimeMax;
+    private double eventLoopCpuLoad;
+    private long bufferPoolHits;
+    private long bufferPoolMisses;
+
+    /**
+     * Returns snapshot in plain-text exposition format: one {@code name value} pair per line.
+     */
+    @NotNull
+    public String toText() {
+        return PREFIX + "accepted_connections " + acceptedConnections + "\n"
+                + PREFIX + "closed_connections " + closedConnections + "\n"
+                + PREFIX + "requests_in_progress " + requestsInProgress + "\n"
+                + PREFIX + "completed_requests " + completedRequests + "\n"
+                + PREFIX + "queue_length " + queueLength + "\n"
+                + PREFIX + "bytes_read " + bytesRead + "\n"
+                + PREFIX + "bytes_written " + bytesWritten + "\n"
+                + PREFIX + "parse_failures " + parseFailures + "\n"
+                + PREFIX + "io_errors " + ioErrors + "\n"
+                + PREFIX + "rejected_requests " + rejectedRequests + "\n"
+                + PREFIX + "cache_hits " + cacheHits + "\n"
+                + PREFIX + "cache_misses " + cacheMisses + "\n"
+                + PREFIX + "cache_evictions " + cacheEvictions + "\n"
+                + PREFIX + "processing_time_mean_ms " + processingTimeMean + "\n"
+                + PREFIX + "processing_time_p99_ms " + processingTimeP99 + "\n"
+                + PREFIX + "processing_time_max_ms " + processingTimeMax + "\n"
+                + PREFIX + "sort_time_mean_ms " + sortTimeMean + "\n"
+                + PREFIX + "sort_time_p99_ms " + sortTimeP99 + "\n"
+                + PREFIX + "sort_time_max_ms " + sortTimeMax + "\n"
+                + PREFIX + "event_loop_cpu_load " + eventLoopCpuLoad + "\n"
+                + PREFIX + "buffer_pool_hits " + bufferPoolHits + "\n"
+                + PREFIX + "buffer_pool_misses " + bufferPoolMisses + "\n";
+    }
+
+    /**
+     * Parses output of {@link #toText}. Unknown names are skipped, missing ones are 0.
+     */
+    @NotNull
+    public static ServerMetricsSnapshot parse(@NotNull String text) throws ProtocolException {
+        Map<String, String> values = new HashMap<>();
+        for (String line : text.split("\n")) {
+            String[] pair = line.trim().split(" ");
+            if (pair.length == 2 && pair[0].startsWith(PREFIX)) {
+                values.put(pair[0].substring(PREFIX.length()), pair[1]);
+            }
+        }
+
+        try {
+            return ServerMetricsSnapshot.builder()
+                    .acceptedConnections(Long.parseLong(values.getOrDefault("accepted_connections", "0")))
+                    .closedConnections(Long.parseLong(values.getOrDefault("closed_connections", "0")))
+                    .requestsInProgress(Long.parseLong(values.getOrDefault("requests_in_progress", "0")))
+                    .completedRequests(Long.parseLong(values.getOrDefault("completed_requests", "0")))
+                    .queueLength(Long.parseLong(values.getOrDefault("queue_length", "0")))
+                    .bytesRead(Long.parseLong(values.getOrDefault("bytes_read", "0")))
+                    .bytesWritten(Long.parseLong(values.getOrDefault("bytes_written", "0")))
+                    .parseFailures(Long.parseLong(values.getOrDefault("parse_failures", "0")))
+                    .ioErrors(Long.parseLong(values.getOrDefault("io_errors", "0")))
+                    .rejectedRequests(Long.parseLong(values.getOrDefault("rejected_requests", "0")))
+                    .cacheHits(Long.parseLong(values.getOrDefault("cache_hits", "0")))
+                    .cacheMisses(Long.parseLong(values.getOrDefault("cache_misses", "0")))
+                    .cacheEvictions(Long.parseLong(values.getOrDefault("cache_evictions", "0")))
+                    .processingTimeMean(Double.parseDouble(values.getOrDefault("processing_time_mean_ms", "0")))
+                    .processingTimeP99(Double.parseDouble(values.getOrDefault("processing_time_p99_ms", "0")))
+                    .processingTimeMax(Double.parseDouble(values.getOrDefault("processing_time_max_ms", "0")))
+                    .sortTimeMean(Double.parseDouble(values.getOrDefault("sort_time_mean_ms", "0")))
+                    .sortTimeP99(Double.parseDouble(values.getOrDefault("sort_time_p99_ms", "0")))
+                    .sortTimeMax(Double.parseDouble(values.getOrDefault("sort_time_max_ms", "0")))
+                    .eventLoopCpuLoad(Double.parseDouble(values.getOrDefault("event_loop_cpu_load", "0")))
+                    .bufferPoolHits(Long.parseLong(values.getOrDefault("buffer_pool_hits", "0")))
+                    .bufferPoolMisses(Long.parseLong(values.getOrDefault("buffer_pool_misses", "0")))
+                    .build();
+        } catch (NumberFormatException exception) {
+            throw new ProtocolException("Malformed metrics: " + exception.getMessage());
+        }
+    }
+}
@@ -1,29 +1,43 @@
 package ru.spbau.mit.kazakov.server;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.jetbrains.annotations.NotNull;
-import ru.spbau.mit.kazakov.utils.ArrayOuterClass;
-import ru.spbau.mit.kazakov.utils.ArrayUtils;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.sort.SortEngine;
 
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.TimeUnit;
+import java.nio.ByteBuffer;
 
 
-public class SimpleServer {
+public class SimpleServer implements Server {
     private final ServerSocket serverSocket;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ResultCache cache;
 
     public SimpleServer(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
+        this(ServerConfig.ofPort(port));
     }
 
+    public SimpleServer(@NotNull ServerConfig config) throws IOException {
+        cache = new ResultCache(config.getCacheCapacity(), metrics);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(config.getAddress());
+    }
+
+    @Override
     public void start() {
-        while (true) {
+        while (!serverSocket.isClosed()) {
             try {
                 Socket clientSocket = serverSocket.accept();
+                metrics.connectionAccepted();
                 new Thread(new ClientHandler(clientSocket)).start();
             } catch (IOException ignored) {
                 //nothing to do
@@ -31,6 +45,17 @@ public class SimpleServer {
         }
     }
 
+    @Override
+    @NotNull
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
     /**
      * Handles client's requests.
      */
@@ -50,40 +75,56 @@ public class SimpleServer {
         @Override
         public void run() {
             try (DataInputStream in = new DataInputStream(client.getInputStream());
-                 DataOutputStream out = new DataOutputStream(client.getOutputStream())) {
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()))) {
+                client.setTcpNoDelay(true);
+                Handshake handshake = Handshake.read(in);
+                metrics.bytesRead(Handshake.SIZE);
+                SortEngine sortEngine = handshake.getSortAlgorithm().getEngine();
+                ArrayCodec codec = handshake.getWireFormat().getCodec();
                 while (true) {
                     int size = in.readInt();
+                    StageTimings timings = new StageTimings();
                     byte[] serializedArray = new byte[size];
 
                     int read = 0;
                     while (read != size) {
                         read += in.read(serializedArray, read, size - read);
                     }
-                    StopWatch queryProcessTime = new StopWatch();
-                    queryProcessTime.start();
+                    timings.lap(ProcessingStage.READ);
+                    metrics.requestRead(Integer.BYTES + size);
 
-                    ArrayOuterClass.Array array = ArrayOuterClass.Array.parseFrom(serializedArray);
-                    int[] intArray = ArrayUtils.toIntArray(array);
-                    StopWatch sortTime = new StopWatch();
-                    sortTime.start();
-                    ArrayUtils.sort(intArray);
-                    sortTime.stop();
-                    ArrayOuterClass.Array protoArray = ArrayUtils.toProtoArray(intArray);
+                    ResultCache.Lookup lookup = cache.lookup(handshake.getWireFormat(),
+                            ByteBuffer.wrap(serializedArray));
+                    ByteBuffer serializedSortedArray = lookup.getResponse();
+                    if (serializedSortedArray != null) {
+                        //lookup replaces deserialization, nothing is sorted or serialized
+                        timings.lap(ProcessingStage.DESERIALIZE);
+                    } else {
+                        int[] intArray = codec.decode(ByteBuffer.wrap(serializedArray));
+                        timings.lap(ProcessingStage.DESERIALIZE);
+                        sortEngine.sort(intArray);
+                        timings.lap(ProcessingStage.SORT);
 
-                    byte[] serializedSortedArray = protoArray.toByteArray();
-                    queryProcessTime.stop();
-                    out.writeLong(queryProcessTime.getTime(TimeUnit.MILLISECONDS));
-                    out.writeLong(sortTime.getTime(TimeUnit.MILLISECONDS));
-                    out.writeInt(serializedSortedArray.length);
-                    out.write(serializedSortedArray);
+                        serializedSortedArray = codec.encode(intArray);
+                        timings.lap(ProcessingStage.SERIALIZE);
+                        lookup.store(serializedSortedArray);
+                    }
+                    ResponseHeader.write(out, handshake.getVersion(), timings, serializedSortedArray.remaining());
+                    out.write(serializedSortedArray.array(), serializedSortedArray.arrayOffset(),
+                            serializedSortedArray.remaining());
                     out.flush();
+                    metrics.requestCompleted(timings.getProcessingTime(), timings.get(ProcessingStage.SORT));
+                    metrics.bytesWritten(ResponseHeader.size(handshake.getVersion())
+                            + serializedSortedArray.remaining());
                 }
-            } catch (Exception ignored) {
+            } catch (Exception exception) {
+                metrics.failed(exception);
                 try {
                     client.close();
-                } catch (IOException exception) {
+                } catch (IOException ignored) {
                     //nothing to do
                 }
+                metrics.connectionClosed();
             }
         }
     }
@@ -0,0 +1,131 @@
+package ru.spbau.mit.kazakov.server;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.protocol.ArrayCodec;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
+import ru.spbau.mit.kazakov.sort.SortEngine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+/**
+ * Blocking request-response server running each client on its own virtual thread.
+ * Sorting is offloaded to a bounded pool of platform threads so CPU-bound work doesn't pin carrier threads.
+ */
+public class VirtualThreadServer implements Server {
+    private final ServerSocket serverSocket;
+    private final ExecutorService threadPool;
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    public VirtualThreadServer(int port) throws IOException {
+        this(ServerConfig.ofPort(port));
+    }
+
+    public VirtualThreadServer(@NotNull ServerConfig config) throws IOException {
+        threadPool = Executors.newFixedThreadPool(config.getWorkerThreads());
+        metrics.watchQueue(threadPool);
+        serverSocket = new ServerSocket();
+        serverSocket.bind(config.getAddress());
+    }
+
+    @Override
+    public void start() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                metrics.connectionAccepted();
+                Thread.ofVirtual().start(new ClientHandler(clientSocket));
+            } catch (IOException ignored) {
+                //nothing to do
+            }
+        }
+    }
+
+    @Override
+    @NotNull
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        threadPool.shutdown();
+    }
+
+    /**
+     * Handles client's requests.
+     */
+    private class ClientHandler implements Runnable {
+        private Socket client;
+
+        /**
+         * Initializes client's socket.
+         */
+        public ClientHandler(@NotNull Socket client) {
+            this.client = client;
+        }
+
+        /**
+         * Request-Response cycle.
+         */
+        @Override
+        public void run() {
+            try (DataInputStream in = new DataInputStream(client.getInputStream());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()))) {
+                client.setTcpNoDelay(true);
+                Handshake handshake = Handshake.read(in);
+                metrics.bytesRead(Handshake.SIZE);
+                SortEngine sortEngine = handshake.getSortAlgorithm().getEngine();
+                ArrayCodec codec = handshake.getWireFormat().getCodec();
+                while (true) {
+                    int size = in.readInt();
+                    StageTimings timings = new StageTimings();
+                    byte[] serializedArray = new byte[size];
+                    in.readFully(serializedArray);
+                    timings.lap(ProcessingStage.READ);
+
+                    int[] intArray = codec.decode(ByteBuffer.wrap(serializedArray));
+                    timings.lap(ProcessingStage.DESERIALIZE);
+                    metrics.requestRead(Integer.BYTES + size);
+                    threadPool.submit(() -> {
+                        timings.lap(ProcessingStage.QUEUE_WAIT);
+                        sortEngine.sort(intArray);
+                        timings.lap(ProcessingStage.SORT);
+                    }).get();
+                    //resuming client's thread after sort counts as waiting too
+                    timings.lap(ProcessingStage.QUEUE_WAIT);
+
+                    ByteBuffer serializedSortedArray = codec.encode(intArray);
+                    timings.lap(ProcessingStage.SERIALIZE);
+                    ResponseHeader.write(out, handshake.getVersion(), timings, serializedSortedArray.remaining());
+                    out.write(serializedSortedArray.array(), serializedSortedArray.arrayOffset(),
+                            serializedSortedArray.remaining());
+                    out.flush();
+                    metrics.requestCompleted(timings.getProcessingTime(), timings.get(ProcessingStage.SORT));
+                    metrics.bytesWritten(ResponseHeader.size(handshake.getVersion())
+                            + serializedSortedArray.remaining());
+                }
+            } catch (Exception exception) {
+                metrics.failed(exception);
+                try {
+                    client.close();
+                } catch (IOException ignored) {
+                    //nothing to do
+                }
+                metrics.connectionClosed();
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.spbau.mit.kazakov.server;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates pools of worker threads sorting arrays.
+ */
+class WorkerPools {
+    private WorkerPools() {
+    }
+
+    /**
+     * Creates fixed pool of configured size with queue of configured capacity. When the queue is full
+     * submission throws {@link RejectedExecutionException} under {@link OverloadPolicy#REJECT} policy,
+     * otherwise submitting thread waits for free space.
+     */
+    @NotNull
+    static ThreadPoolExecutor create(@NotNull ServerConfig config) {
+        int threads = config.getWorkerThreads();
+        BlockingQueue<Runnable> queue = config.getQueueCapacity() == ServerConfig.UNBOUNDED
+                ? new LinkedBlockingQueue<>()
+                : new ArrayBlockingQueue<>(config.getQueueCapacity());
+        RejectedExecutionHandler handler = config.getOverloadPolicy() == OverloadPolicy.REJECT
+                ? new ThreadPoolExecutor.AbortPolicy()
+                : WorkerPools::waitForSpace;
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, handler);
+    }
+
+    private static void waitForSpace(@NotNull Runnable task, @NotNull ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException();
+        }
+        try {
+            pool.getQueue().put(task);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(exception);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.spbau.mit.kazakov.sort;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Quadratic bubble sort, kept as a baseline.
+ */
+public class BubbleSortEngine implements SortEngine {
+    @Override
+    public void sort(@NotNull int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            for (int j = 1; j < array.length - i; j++) {
+                if (array[j - 1] > array[j]) {
+                    int temp = array[j - 1];
+                    array[j - 1] = array[j];
+                    array[j] = temp;
+                }
+            }
+        }
+    }
+}
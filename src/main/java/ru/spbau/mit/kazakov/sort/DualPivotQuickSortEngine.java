@@ -0,0 +1,15 @@
+package ru.spbau.mit.kazakov.sort;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Dual-pivot quicksort from the JDK.
+ */
+public class DualPivotQuickSortEngine implements SortEngine {
+    @Override
+    public void sort(@NotNull int[] array) {
+        Arrays.sort(array);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.spbau.mit.kazakov.sort;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Merge sort which sorts halves in parallel on a fork/join pool.
+ */
+public class ParallelMergeSortEngine implements SortEngine {
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+    private final ForkJoinPool pool;
+
+    public ParallelMergeSortEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelMergeSortEngine(@NotNull ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void sort(@NotNull int[] array) {
+        if (array.length <= SEQUENTIAL_THRESHOLD) {
+            Arrays.sort(array);
+            return;
+        }
+        pool.invoke(new MergeSortTask(array, new int[array.length], 0, array.length));
+    }
+
+    /**
+     * Sorts [from, to) range of array using buffer's range of the same bounds for merging.
+     */
+    private static class MergeSortTask extends RecursiveAction {
+        private final int[] array;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+
+        private MergeSortTask(@NotNull int[] array, @NotNull int[] buffer, int from, int to) {
+            this.array = array;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                Arrays.sort(array, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new MergeSortTask(array, buffer, from, middle), new MergeSortTask(array, buffer, middle, to));
+            merge(middle);
+        }
+
+        private void merge(int middle) {
+            if (array[middle - 1] <= array[middle]) {
+                return;
+            }
+
+            System.arraycopy(array, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right == to || (left < middle && buffer[left] <= buffer[right])) {
+                    array[i] = buffer[left++];
+                } else {
+                    array[i] = buffer[right++];
+                }
+            }
+        }
+    }
+}
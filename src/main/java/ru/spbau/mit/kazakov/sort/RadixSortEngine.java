@@ -0,0 +1,48 @@
+package ru.spbau.mit.kazakov.sort;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * LSD radix sort by bytes. Uses one auxiliary buffer of the array's length.
+ */
+public class RadixSortEngine implements SortEngine {
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int MASK = RADIX - 1;
+    private static final int PASSES = Integer.SIZE / RADIX_BITS;
+
+    @Override
+    public void sort(@NotNull int[] array) {
+        int[] source = array;
+        int[] destination = new int[array.length];
+        int[] count = new int[RADIX + 1];
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            int shift = pass * RADIX_BITS;
+            //sign bit is flipped on the last pass so negative numbers go first
+            int flip = pass == PASSES - 1 ? RADIX >>> 1 : 0;
+
+            Arrays.fill(count, 0);
+            for (int element : source) {
+                count[(((element >>> shift) & MASK) ^ flip) + 1]++;
+            }
+            for (int i = 0; i < RADIX; i++) {
+                count[i + 1] += count[i];
+            }
+            for (int element : source) {
+                destination[count[((element >>> shift) & MASK) ^ flip]++] = element;
+            }
+
+            int[] temp = source;
+            source = destination;
+            destination = temp;
+        }
+
+        //even number of passes leaves the result in the original array
+        if (source != array) {
+            System.arraycopy(source, 0, array, 0, array.length);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ru.spbau.mit.kazakov.sort;
+
+import org.jetbrains.annotations.NotNull;
+
+public enum SortAlgorithm {
+    BUBBLE {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Bubble sort";
+        }
+    },
+    QUICK {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Dual-pivot quicksort";
+        }
+    },
+    RADIX {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Radix sort";
+        }
+    },
+    PARALLEL_MERGE {
+        @Override
+        @NotNull
+        public String toString() {
+            return "Parallel merge sort";
+        }
+    };
+
+    private static final SortEngine BUBBLE_ENGINE = new BubbleSortEngine();
+    private static final SortEngine QUICK_ENGINE = new DualPivotQuickSortEngine();
+    private static final SortEngine RADIX_ENGINE = new RadixSortEngine();
+    private static final SortEngine PARALLEL_MERGE_ENGINE = new ParallelMergeSortEngine();
+
+    /**
+     * Returns shared stateless engine implementing this algorithm.
+     */
+    @NotNull
+    public SortEngine getEngine() {
+        switch (this) {
+            case QUICK:
+                return QUICK_ENGINE;
+            case RADIX:
+                return RADIX_ENGINE;
+            case PARALLEL_MERGE:
+                return PARALLEL_MERGE_ENGINE;
+            default:
+                return BUBBLE_ENGINE;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.spbau.mit.kazakov.sort;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Algorithm used by servers to sort received arrays.
+ */
+public interface SortEngine {
+    /**
+     * Sorts specified array in ascending order.
+     */
+    void sort(@NotNull int[] array);
+}
@@ -376,7 +376,7 @@ public final class ArrayOuterClass {
                 ArrayOuterClass.Array.class, ArrayOuterClass.Array.Builder.class);
       }
 
-      // Construct using ru.spbau.mit.kazakov.utils.ArrayOuterClass.Array.newBuilder()
+      // Construct using ArrayOuterClass.Array.newBuilder()
       private Builder() {
         maybeForceBuilderInitialization();
       }
@@ -662,11 +662,1145 @@ public final class ArrayOuterClass {
 
   }
 
+  public interface PackedArrayOrBuilder extends
+      // @@protoc_insertion_point(interface_extends:ru.spbau.mit.kazakov.PackedArray)
+      com.google.protobuf.MessageOrBuilder {
+
+    /**
+     * <code>repeated int32 element = 1 [packed = true];</code>
+     */
+    java.util.List<java.lang.Integer> getElementList();
+    /**
+     * <code>repeated int32 element = 1 [packed = true];</code>
+     */
+    int getElementCount();
+    /**
+     * <code>repeated int32 element = 1 [packed = true];</code>
+     */
+    int getElement(int index);
+  }
+  /**
+   * Protobuf type {@code ru.spbau.mit.kazakov.PackedArray}
+   */
+  public  static final class PackedArray extends
+      com.google.protobuf.GeneratedMessageV3 implements
+      // @@protoc_insertion_point(message_implements:ru.spbau.mit.kazakov.PackedArray)
+      PackedArrayOrBuilder {
+  private static final long serialVersionUID = 0L;
+    // Use PackedArray.newBuilder() to construct.
+    private PackedArray(com.google.protobuf.GeneratedMessageV3.Builder<?> builder) {
+      super(builder);
+    }
+    private PackedArray() {
+      element_ = java.util.Collections.emptyList();
+    }
+
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+    getUnknownFields() {
+      return this.unknownFields;
+    }
+    private PackedArray(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      this();
+      if (extensionRegistry == null) {
+        throw new java.lang.NullPointerException();
+      }
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(
+                  input, unknownFields, extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 8: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                element_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              element_.add(input.readInt32());
+              break;
+            }
+            case 10: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001) && input.getBytesUntilLimit() > 0) {
+                element_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                element_.add(input.readInt32());
+              }
+              input.popLimit(limit);
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          element_ = java.util.Collections.unmodifiableList(element_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_PackedArray_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_PackedArray_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              ArrayOuterClass.PackedArray.class, ArrayOuterClass.PackedArray.Builder.class);
+    }
+
+    public static final int ELEMENT_FIELD_NUMBER = 1;
+    private java.util.List<java.lang.Integer> element_;
+    /**
+     * <code>repeated int32 element = 1 [packed = true];</code>
+     */
+    public java.util.List<java.lang.Integer>
+        getElementList() {
+      return element_;
+    }
+    /**
+     * <code>repeated int32 element = 1 [packed = true];</code>
+     */
+    public int getElementCount() {
+      return element_.size();
+    }
+    /**
+     * <code>repeated int32 element = 1 [packed = true];</code>
+     */
+    public int getElement(int index) {
+      return element_.get(index);
+    }
+    private int elementMemoizedSerializedSize = -1;
+
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized == 1) return true;
+      if (isInitialized == 0) return false;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (getElementList().size() > 0) {
+        output.writeUInt32NoTag(10);
+        output.writeUInt32NoTag(elementMemoizedSerializedSize);
+      }
+      for (int i = 0; i < element_.size(); i++) {
+        output.writeInt32NoTag(element_.get(i));
+      }
+      unknownFields.writeTo(output);
+    }
+
+    public int getSerializedSize() {
+      int size = memoizedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      {
+        int dataSize = 0;
+        for (int i = 0; i < element_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeInt32SizeNoTag(element_.get(i));
+        }
+        size += dataSize;
+        if (!getElementList().isEmpty()) {
+          size += 1;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        elementMemoizedSerializedSize = dataSize;
+      }
+      size += unknownFields.getSerializedSize();
+      memoizedSize = size;
+      return size;
+    }
+
+    @java.lang.Override
+    public boolean equals(final java.lang.Object obj) {
+      if (obj == this) {
+       return true;
+      }
+      if (!(obj instanceof ArrayOuterClass.PackedArray)) {
+        return super.equals(obj);
+      }
+      ArrayOuterClass.PackedArray other = (ArrayOuterClass.PackedArray) obj;
+
+      boolean result = true;
+      result = result && getElementList()
+          .equals(other.getElementList());
+      result = result && unknownFields.equals(other.unknownFields);
+      return result;
+    }
+
+    @java.lang.Override
+    public int hashCode() {
+      if (memoizedHashCode != 0) {
+        return memoizedHashCode;
+      }
+      int hash = 41;
+      hash = (19 * hash) + getDescriptor().hashCode();
+      if (getElementCount() > 0) {
+        hash = (37 * hash) + ELEMENT_FIELD_NUMBER;
+        hash = (53 * hash) + getElementList().hashCode();
+      }
+      hash = (29 * hash) + unknownFields.hashCode();
+      memoizedHashCode = hash;
+      return hash;
+    }
+
+    public static ArrayOuterClass.PackedArray parseFrom(
+        java.nio.ByteBuffer data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        java.nio.ByteBuffer data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input, extensionRegistry);
+    }
+    public static ArrayOuterClass.PackedArray parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseDelimitedWithIOException(PARSER, input);
+    }
+    public static ArrayOuterClass.PackedArray parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseDelimitedWithIOException(PARSER, input, extensionRegistry);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input);
+    }
+    public static ArrayOuterClass.PackedArray parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input, extensionRegistry);
+    }
+
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder() {
+      return DEFAULT_INSTANCE.toBuilder();
+    }
+    public static Builder newBuilder(ArrayOuterClass.PackedArray prototype) {
+      return DEFAULT_INSTANCE.toBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() {
+      return this == DEFAULT_INSTANCE
+          ? new Builder() : new Builder().mergeFrom(this);
+    }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessageV3.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ru.spbau.mit.kazakov.PackedArray}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessageV3.Builder<Builder> implements
+        // @@protoc_insertion_point(builder_implements:ru.spbau.mit.kazakov.PackedArray)
+        ArrayOuterClass.PackedArrayOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_PackedArray_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_PackedArray_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ArrayOuterClass.PackedArray.class, ArrayOuterClass.PackedArray.Builder.class);
+      }
+
+      // Construct using ArrayOuterClass.PackedArray.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessageV3.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessageV3
+                .alwaysUseFieldBuilders) {
+        }
+      }
+      public Builder clear() {
+        super.clear();
+        element_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_PackedArray_descriptor;
+      }
+
+      public ArrayOuterClass.PackedArray getDefaultInstanceForType() {
+        return ArrayOuterClass.PackedArray.getDefaultInstance();
+      }
+
+      public ArrayOuterClass.PackedArray build() {
+        ArrayOuterClass.PackedArray result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public ArrayOuterClass.PackedArray buildPartial() {
+        ArrayOuterClass.PackedArray result = new ArrayOuterClass.PackedArray(this);
+        int from_bitField0_ = bitField0_;
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          element_ = java.util.Collections.unmodifiableList(element_);
+          bitField0_ = (bitField0_ & ~0x00000001);
+        }
+        result.element_ = element_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder clone() {
+        return (Builder) super.clone();
+      }
+      public Builder setField(
+          com.google.protobuf.Descriptors.FieldDescriptor field,
+          java.lang.Object value) {
+        return (Builder) super.setField(field, value);
+      }
+      public Builder clearField(
+          com.google.protobuf.Descriptors.FieldDescriptor field) {
+        return (Builder) super.clearField(field);
+      }
+      public Builder clearOneof(
+          com.google.protobuf.Descriptors.OneofDescriptor oneof) {
+        return (Builder) super.clearOneof(oneof);
+      }
+      public Builder setRepeatedField(
+          com.google.protobuf.Descriptors.FieldDescriptor field,
+          int index, java.lang.Object value) {
+        return (Builder) super.setRepeatedField(field, index, value);
+      }
+      public Builder addRepeatedField(
+          com.google.protobuf.Descriptors.FieldDescriptor field,
+          java.lang.Object value) {
+        return (Builder) super.addRepeatedField(field, value);
+      }
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof ArrayOuterClass.PackedArray) {
+          return mergeFrom((ArrayOuterClass.PackedArray)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(ArrayOuterClass.PackedArray other) {
+        if (other == ArrayOuterClass.PackedArray.getDefaultInstance()) return this;
+        if (!other.element_.isEmpty()) {
+          if (element_.isEmpty()) {
+            element_ = other.element_;
+            bitField0_ = (bitField0_ & ~0x00000001);
+          } else {
+            ensureElementIsMutable();
+            element_.addAll(other.element_);
+          }
+          onChanged();
+        }
+        this.mergeUnknownFields(other.unknownFields);
+        onChanged();
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        ArrayOuterClass.PackedArray parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (ArrayOuterClass.PackedArray) e.getUnfinishedMessage();
+          throw e.unwrapIOException();
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      private java.util.List<java.lang.Integer> element_ = java.util.Collections.emptyList();
+      private void ensureElementIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          element_ = new java.util.ArrayList<java.lang.Integer>(element_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public java.util.List<java.lang.Integer>
+          getElementList() {
+        return java.util.Collections.unmodifiableList(element_);
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public int getElementCount() {
+        return element_.size();
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public int getElement(int index) {
+        return element_.get(index);
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public Builder setElement(
+          int index, int value) {
+        ensureElementIsMutable();
+        element_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public Builder addElement(int value) {
+        ensureElementIsMutable();
+        element_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public Builder addAllElement(
+          java.lang.Iterable<? extends java.lang.Integer> values) {
+        ensureElementIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+            values, element_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated int32 element = 1 [packed = true];</code>
+       */
+      public Builder clearElement() {
+        element_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000001);
+        onChanged();
+        return this;
+      }
+      public final Builder setUnknownFields(
+          final com.google.protobuf.UnknownFieldSet unknownFields) {
+        return super.setUnknownFields(unknownFields);
+      }
+
+      public final Builder mergeUnknownFields(
+          final com.google.protobuf.UnknownFieldSet unknownFields) {
+        return super.mergeUnknownFields(unknownFields);
+      }
+
+
+      // @@protoc_insertion_point(builder_scope:ru.spbau.mit.kazakov.PackedArray)
+    }
+
+    // @@protoc_insertion_point(class_scope:ru.spbau.mit.kazakov.PackedArray)
+    private static final ArrayOuterClass.PackedArray DEFAULT_INSTANCE;
+    static {
+      DEFAULT_INSTANCE = new ArrayOuterClass.PackedArray();
+    }
+
+    public static ArrayOuterClass.PackedArray getDefaultInstance() {
+      return DEFAULT_INSTANCE;
+    }
+
+    @java.lang.Deprecated public static final com.google.protobuf.Parser<PackedArray>
+        PARSER = new com.google.protobuf.AbstractParser<PackedArray>() {
+      public PackedArray parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new PackedArray(input, extensionRegistry);
+      }
+    };
+
+    public static com.google.protobuf.Parser<PackedArray> parser() {
+      return PARSER;
+    }
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<PackedArray> getParserForType() {
+      return PARSER;
+    }
+
+    public ArrayOuterClass.PackedArray getDefaultInstanceForType() {
+      return DEFAULT_INSTANCE;
+    }
+
+  }
+
+  public interface DeltaArrayOrBuilder extends
+      // @@protoc_insertion_point(interface_extends:ru.spbau.mit.kazakov.DeltaArray)
+      com.google.protobuf.MessageOrBuilder {
+
+    /**
+     * <code>repeated sint32 delta = 1 [packed = true];</code>
+     */
+    java.util.List<java.lang.Integer> getDeltaList();
+    /**
+     * <code>repeated sint32 delta = 1 [packed = true];</code>
+     */
+    int getDeltaCount();
+    /**
+     * <code>repeated sint32 delta = 1 [packed = true];</code>
+     */
+    int getDelta(int index);
+  }
+  /**
+   * Protobuf type {@code ru.spbau.mit.kazakov.DeltaArray}
+   */
+  public  static final class DeltaArray extends
+      com.google.protobuf.GeneratedMessageV3 implements
+      // @@protoc_insertion_point(message_implements:ru.spbau.mit.kazakov.DeltaArray)
+      DeltaArrayOrBuilder {
+  private static final long serialVersionUID = 0L;
+    // Use DeltaArray.newBuilder() to construct.
+    private DeltaArray(com.google.protobuf.GeneratedMessageV3.Builder<?> builder) {
+      super(builder);
+    }
+    private DeltaArray() {
+      delta_ = java.util.Collections.emptyList();
+    }
+
+    @java.lang.Override
+    public final com.google.protobuf.UnknownFieldSet
+    getUnknownFields() {
+      return this.unknownFields;
+    }
+    private DeltaArray(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      this();
+      if (extensionRegistry == null) {
+        throw new java.lang.NullPointerException();
+      }
+      int mutable_bitField0_ = 0;
+      com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+          com.google.protobuf.UnknownFieldSet.newBuilder();
+      try {
+        boolean done = false;
+        while (!done) {
+          int tag = input.readTag();
+          switch (tag) {
+            case 0:
+              done = true;
+              break;
+            default: {
+              if (!parseUnknownField(
+                  input, unknownFields, extensionRegistry, tag)) {
+                done = true;
+              }
+              break;
+            }
+            case 8: {
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+                delta_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              delta_.add(input.readSInt32());
+              break;
+            }
+            case 10: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000001) == 0x00000001) && input.getBytesUntilLimit() > 0) {
+                delta_ = new java.util.ArrayList<java.lang.Integer>();
+                mutable_bitField0_ |= 0x00000001;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                delta_.add(input.readSInt32());
+              }
+              input.popLimit(limit);
+              break;
+            }
+          }
+        }
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        throw e.setUnfinishedMessage(this);
+      } catch (java.io.IOException e) {
+        throw new com.google.protobuf.InvalidProtocolBufferException(
+            e).setUnfinishedMessage(this);
+      } finally {
+        if (((mutable_bitField0_ & 0x00000001) == 0x00000001)) {
+          delta_ = java.util.Collections.unmodifiableList(delta_);
+        }
+        this.unknownFields = unknownFields.build();
+        makeExtensionsImmutable();
+      }
+    }
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_DeltaArray_descriptor;
+    }
+
+    protected com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_DeltaArray_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              ArrayOuterClass.DeltaArray.class, ArrayOuterClass.DeltaArray.Builder.class);
+    }
+
+    public static final int DELTA_FIELD_NUMBER = 1;
+    private java.util.List<java.lang.Integer> delta_;
+    /**
+     * <code>repeated sint32 delta = 1 [packed = true];</code>
+     */
+    public java.util.List<java.lang.Integer>
+        getDeltaList() {
+      return delta_;
+    }
+    /**
+     * <code>repeated sint32 delta = 1 [packed = true];</code>
+     */
+    public int getDeltaCount() {
+      return delta_.size();
+    }
+    /**
+     * <code>repeated sint32 delta = 1 [packed = true];</code>
+     */
+    public int getDelta(int index) {
+      return delta_.get(index);
+    }
+    private int deltaMemoizedSerializedSize = -1;
+
+    private byte memoizedIsInitialized = -1;
+    public final boolean isInitialized() {
+      byte isInitialized = memoizedIsInitialized;
+      if (isInitialized == 1) return true;
+      if (isInitialized == 0) return false;
+
+      memoizedIsInitialized = 1;
+      return true;
+    }
+
+    public void writeTo(com.google.protobuf.CodedOutputStream output)
+                        throws java.io.IOException {
+      getSerializedSize();
+      if (getDeltaList().size() > 0) {
+        output.writeUInt32NoTag(10);
+        output.writeUInt32NoTag(deltaMemoizedSerializedSize);
+      }
+      for (int i = 0; i < delta_.size(); i++) {
+        output.writeSInt32NoTag(delta_.get(i));
+      }
+      unknownFields.writeTo(output);
+    }
+
+    public int getSerializedSize() {
+      int size = memoizedSize;
+      if (size != -1) return size;
+
+      size = 0;
+      {
+        int dataSize = 0;
+        for (int i = 0; i < delta_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeSInt32SizeNoTag(delta_.get(i));
+        }
+        size += dataSize;
+        if (!getDeltaList().isEmpty()) {
+          size += 1;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        deltaMemoizedSerializedSize = dataSize;
+      }
+      size += unknownFields.getSerializedSize();
+      memoizedSize = size;
+      return size;
+    }
+
+    @java.lang.Override
+    public boolean equals(final java.lang.Object obj) {
+      if (obj == this) {
+       return true;
+      }
+      if (!(obj instanceof ArrayOuterClass.DeltaArray)) {
+        return super.equals(obj);
+      }
+      ArrayOuterClass.DeltaArray other = (ArrayOuterClass.DeltaArray) obj;
+
+      boolean result = true;
+      result = result && getDeltaList()
+          .equals(other.getDeltaList());
+      result = result && unknownFields.equals(other.unknownFields);
+      return result;
+    }
+
+    @java.lang.Override
+    public int hashCode() {
+      if (memoizedHashCode != 0) {
+        return memoizedHashCode;
+      }
+      int hash = 41;
+      hash = (19 * hash) + getDescriptor().hashCode();
+      if (getDeltaCount() > 0) {
+        hash = (37 * hash) + DELTA_FIELD_NUMBER;
+        hash = (53 * hash) + getDeltaList().hashCode();
+      }
+      hash = (29 * hash) + unknownFields.hashCode();
+      memoizedHashCode = hash;
+      return hash;
+    }
+
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        java.nio.ByteBuffer data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        java.nio.ByteBuffer data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        com.google.protobuf.ByteString data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        com.google.protobuf.ByteString data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(byte[] data)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        byte[] data,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return PARSER.parseFrom(data, extensionRegistry);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input, extensionRegistry);
+    }
+    public static ArrayOuterClass.DeltaArray parseDelimitedFrom(java.io.InputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseDelimitedWithIOException(PARSER, input);
+    }
+    public static ArrayOuterClass.DeltaArray parseDelimitedFrom(
+        java.io.InputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseDelimitedWithIOException(PARSER, input, extensionRegistry);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        com.google.protobuf.CodedInputStream input)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input);
+    }
+    public static ArrayOuterClass.DeltaArray parseFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      return com.google.protobuf.GeneratedMessageV3
+          .parseWithIOException(PARSER, input, extensionRegistry);
+    }
+
+    public Builder newBuilderForType() { return newBuilder(); }
+    public static Builder newBuilder() {
+      return DEFAULT_INSTANCE.toBuilder();
+    }
+    public static Builder newBuilder(ArrayOuterClass.DeltaArray prototype) {
+      return DEFAULT_INSTANCE.toBuilder().mergeFrom(prototype);
+    }
+    public Builder toBuilder() {
+      return this == DEFAULT_INSTANCE
+          ? new Builder() : new Builder().mergeFrom(this);
+    }
+
+    @java.lang.Override
+    protected Builder newBuilderForType(
+        com.google.protobuf.GeneratedMessageV3.BuilderParent parent) {
+      Builder builder = new Builder(parent);
+      return builder;
+    }
+    /**
+     * Protobuf type {@code ru.spbau.mit.kazakov.DeltaArray}
+     */
+    public static final class Builder extends
+        com.google.protobuf.GeneratedMessageV3.Builder<Builder> implements
+        // @@protoc_insertion_point(builder_implements:ru.spbau.mit.kazakov.DeltaArray)
+        ArrayOuterClass.DeltaArrayOrBuilder {
+      public static final com.google.protobuf.Descriptors.Descriptor
+          getDescriptor() {
+        return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_DeltaArray_descriptor;
+      }
+
+      protected com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+          internalGetFieldAccessorTable() {
+        return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_DeltaArray_fieldAccessorTable
+            .ensureFieldAccessorsInitialized(
+                ArrayOuterClass.DeltaArray.class, ArrayOuterClass.DeltaArray.Builder.class);
+      }
+
+      // Construct using ArrayOuterClass.DeltaArray.newBuilder()
+      private Builder() {
+        maybeForceBuilderInitialization();
+      }
+
+      private Builder(
+          com.google.protobuf.GeneratedMessageV3.BuilderParent parent) {
+        super(parent);
+        maybeForceBuilderInitialization();
+      }
+      private void maybeForceBuilderInitialization() {
+        if (com.google.protobuf.GeneratedMessageV3
+                .alwaysUseFieldBuilders) {
+        }
+      }
+      public Builder clear() {
+        super.clear();
+        delta_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000001);
+        return this;
+      }
+
+      public com.google.protobuf.Descriptors.Descriptor
+          getDescriptorForType() {
+        return ArrayOuterClass.internal_static_ru_spbau_mit_kazakov_DeltaArray_descriptor;
+      }
+
+      public ArrayOuterClass.DeltaArray getDefaultInstanceForType() {
+        return ArrayOuterClass.DeltaArray.getDefaultInstance();
+      }
+
+      public ArrayOuterClass.DeltaArray build() {
+        ArrayOuterClass.DeltaArray result = buildPartial();
+        if (!result.isInitialized()) {
+          throw newUninitializedMessageException(result);
+        }
+        return result;
+      }
+
+      public ArrayOuterClass.DeltaArray buildPartial() {
+        ArrayOuterClass.DeltaArray result = new ArrayOuterClass.DeltaArray(this);
+        int from_bitField0_ = bitField0_;
+        if (((bitField0_ & 0x00000001) == 0x00000001)) {
+          delta_ = java.util.Collections.unmodifiableList(delta_);
+          bitField0_ = (bitField0_ & ~0x00000001);
+        }
+        result.delta_ = delta_;
+        onBuilt();
+        return result;
+      }
+
+      public Builder clone() {
+        return (Builder) super.clone();
+      }
+      public Builder setField(
+          com.google.protobuf.Descriptors.FieldDescriptor field,
+          java.lang.Object value) {
+        return (Builder) super.setField(field, value);
+      }
+      public Builder clearField(
+          com.google.protobuf.Descriptors.FieldDescriptor field) {
+        return (Builder) super.clearField(field);
+      }
+      public Builder clearOneof(
+          com.google.protobuf.Descriptors.OneofDescriptor oneof) {
+        return (Builder) super.clearOneof(oneof);
+      }
+      public Builder setRepeatedField(
+          com.google.protobuf.Descriptors.FieldDescriptor field,
+          int index, java.lang.Object value) {
+        return (Builder) super.setRepeatedField(field, index, value);
+      }
+      public Builder addRepeatedField(
+          com.google.protobuf.Descriptors.FieldDescriptor field,
+          java.lang.Object value) {
+        return (Builder) super.addRepeatedField(field, value);
+      }
+      public Builder mergeFrom(com.google.protobuf.Message other) {
+        if (other instanceof ArrayOuterClass.DeltaArray) {
+          return mergeFrom((ArrayOuterClass.DeltaArray)other);
+        } else {
+          super.mergeFrom(other);
+          return this;
+        }
+      }
+
+      public Builder mergeFrom(ArrayOuterClass.DeltaArray other) {
+        if (other == ArrayOuterClass.DeltaArray.getDefaultInstance()) return this;
+        if (!other.delta_.isEmpty()) {
+          if (delta_.isEmpty()) {
+            delta_ = other.delta_;
+            bitField0_ = (bitField0_ & ~0x00000001);
+          } else {
+            ensureDeltaIsMutable();
+            delta_.addAll(other.delta_);
+          }
+          onChanged();
+        }
+        this.mergeUnknownFields(other.unknownFields);
+        onChanged();
+        return this;
+      }
+
+      public final boolean isInitialized() {
+        return true;
+      }
+
+      public Builder mergeFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws java.io.IOException {
+        ArrayOuterClass.DeltaArray parsedMessage = null;
+        try {
+          parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+        } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+          parsedMessage = (ArrayOuterClass.DeltaArray) e.getUnfinishedMessage();
+          throw e.unwrapIOException();
+        } finally {
+          if (parsedMessage != null) {
+            mergeFrom(parsedMessage);
+          }
+        }
+        return this;
+      }
+      private int bitField0_;
+
+      private java.util.List<java.lang.Integer> delta_ = java.util.Collections.emptyList();
+      private void ensureDeltaIsMutable() {
+        if (!((bitField0_ & 0x00000001) == 0x00000001)) {
+          delta_ = new java.util.ArrayList<java.lang.Integer>(delta_);
+          bitField0_ |= 0x00000001;
+         }
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public java.util.List<java.lang.Integer>
+          getDeltaList() {
+        return java.util.Collections.unmodifiableList(delta_);
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public int getDeltaCount() {
+        return delta_.size();
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public int getDelta(int index) {
+        return delta_.get(index);
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public Builder setDelta(
+          int index, int value) {
+        ensureDeltaIsMutable();
+        delta_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public Builder addDelta(int value) {
+        ensureDeltaIsMutable();
+        delta_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public Builder addAllDelta(
+          java.lang.Iterable<? extends java.lang.Integer> values) {
+        ensureDeltaIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+            values, delta_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated sint32 delta = 1 [packed = true];</code>
+       */
+      public Builder clearDelta() {
+        delta_ = java.util.Collections.emptyList();
+        bitField0_ = (bitField0_ & ~0x00000001);
+        onChanged();
+        return this;
+      }
+      public final Builder setUnknownFields(
+          final com.google.protobuf.UnknownFieldSet unknownFields) {
+        return super.setUnknownFields(unknownFields);
+      }
+
+      public final Builder mergeUnknownFields(
+          final com.google.protobuf.UnknownFieldSet unknownFields) {
+        return super.mergeUnknownFields(unknownFields);
+      }
+
+
+      // @@protoc_insertion_point(builder_scope:ru.spbau.mit.kazakov.DeltaArray)
+    }
+
+    // @@protoc_insertion_point(class_scope:ru.spbau.mit.kazakov.DeltaArray)
+    private static final ArrayOuterClass.DeltaArray DEFAULT_INSTANCE;
+    static {
+      DEFAULT_INSTANCE = new ArrayOuterClass.DeltaArray();
+    }
+
+    public static ArrayOuterClass.DeltaArray getDefaultInstance() {
+      return DEFAULT_INSTANCE;
+    }
+
+    @java.lang.Deprecated public static final com.google.protobuf.Parser<DeltaArray>
+        PARSER = new com.google.protobuf.AbstractParser<DeltaArray>() {
+      public DeltaArray parsePartialFrom(
+          com.google.protobuf.CodedInputStream input,
+          com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+          throws com.google.protobuf.InvalidProtocolBufferException {
+        return new DeltaArray(input, extensionRegistry);
+      }
+    };
+
+    public static com.google.protobuf.Parser<DeltaArray> parser() {
+      return PARSER;
+    }
+
+    @java.lang.Override
+    public com.google.protobuf.Parser<DeltaArray> getParserForType() {
+      return PARSER;
+    }
+
+    public ArrayOuterClass.DeltaArray getDefaultInstanceForType() {
+      return DEFAULT_INSTANCE;
+    }
+
+  }
+
   private static final com.google.protobuf.Descriptors.Descriptor
     internal_static_ru_spbau_mit_kazakov_Array_descriptor;
   private static final 
     com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
       internal_static_ru_spbau_mit_kazakov_Array_fieldAccessorTable;
+  private static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_ru_spbau_mit_kazakov_PackedArray_descriptor;
+  private static final 
+    com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+      internal_static_ru_spbau_mit_kazakov_PackedArray_fieldAccessorTable;
+  private static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_ru_spbau_mit_kazakov_DeltaArray_descriptor;
+  private static final 
+    com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+      internal_static_ru_spbau_mit_kazakov_DeltaArray_fieldAccessorTable;
 
   public static com.google.protobuf.Descriptors.FileDescriptor
       getDescriptor() {
@@ -677,7 +1811,9 @@ public final class ArrayOuterClass {
   static {
     java.lang.String[] descriptorData = {
       "\n\013array.proto\022\024ru.spbau.mit.kazakov\"&\n\005A" +
-      "rray\022\014\n\004size\030\001 \002(\005\022\017\n\007element\030\002 \003(\005"
+      "rray\022\014\n\004size\030\001 \002(\005\022\017\n\007element\030\002 \003(\005\"\"\n\013P" +
+      "ackedArray\022\023\n\007element\030\001 \003(\005B\002\020\001\"\037\n\nDelta" +
+      "Array\022\021\n\005delta\030\001 \003(\021B\002\020\001"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -697,6 +1833,18 @@ public final class ArrayOuterClass {
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_ru_spbau_mit_kazakov_Array_descriptor,
         new java.lang.String[] { "Size", "Element", });
+    internal_static_ru_spbau_mit_kazakov_PackedArray_descriptor =
+      getDescriptor().getMessageTypes().get(1);
+    internal_static_ru_spbau_mit_kazakov_PackedArray_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
+        internal_static_ru_spbau_mit_kazakov_PackedArray_descriptor,
+        new java.lang.String[] { "Element", });
+    internal_static_ru_spbau_mit_kazakov_DeltaArray_descriptor =
+      getDescriptor().getMessageTypes().get(2);
+    internal_static_ru_spbau_mit_kazakov_DeltaArray_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
+        internal_static_ru_spbau_mit_kazakov_DeltaArray_descriptor,
+        new java.lang.String[] { "Delta", });
   }
 
   // @@protoc_insertion_point(outer_class_scope)
@@ -1,21 +1,25 @@
 package ru.spbau.mit.kazakov.utils;
 
 import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.sort.SortAlgorithm;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
 
 public class ArrayUtils {
     /**
      * Sorts specified array using bubble sort.
      */
     public static void sort(@NotNull int[] array) {
-        for (int i = 0; i < array.length; i++) {
-            for (int j = 1; j < array.length - i; j++) {
-                if (array[j - 1] > array[j]) {
-                    int temp = array[j - 1];
-                    array[j - 1] = array[j];
-                    array[j] = temp;
-                }
-            }
-        }
+        sort(array, SortAlgorithm.BUBBLE);
+    }
+
+    /**
+     * Sorts specified array using specified algorithm.
+     */
+    public static void sort(@NotNull int[] array, @NotNull SortAlgorithm algorithm) {
+        algorithm.getEngine().sort(array);
     }
 
     /**
@@ -47,4 +51,82 @@ public class ArrayUtils {
 
         return builder.build();
     }
+
+    /**
+     * Converts {@link ArrayOuterClass.PackedArray} to int[].
+     */
+    @NotNull
+    public static int[] toIntArray(@NotNull ArrayOuterClass.PackedArray array) {
+        return array.getElementList().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Converts int[] to {@link ArrayOuterClass.PackedArray}.
+     */
+    @NotNull
+    public static ArrayOuterClass.PackedArray toPackedArray(@NotNull int[] intArray) {
+        return ArrayOuterClass.PackedArray.newBuilder()
+                .addAllElement(asList(intArray))
+                .build();
+    }
+
+    /**
+     * Converts {@link ArrayOuterClass.DeltaArray} to int[] by summing up deltas.
+     */
+    @NotNull
+    public static int[] toIntArray(@NotNull ArrayOuterClass.DeltaArray array) {
+        int[] intArray = array.getDeltaList().stream().mapToInt(Integer::intValue).toArray();
+
+        for (int i = 1; i < intArray.length; i++) {
+            intArray[i] += intArray[i - 1];
+        }
+
+        return intArray;
+    }
+
+    /**
+     * Converts int[] to {@link ArrayOuterClass.DeltaArray} storing differences between adjacent elements.
+     * Differences overflow silently and are restored by overflowing addition.
+     */
+    @NotNull
+    public static ArrayOuterClass.DeltaArray toDeltaArray(@NotNull int[] intArray) {
+        int[] deltas = new int[intArray.length];
+
+        int previous = 0;
+        for (int i = 0; i < intArray.length; i++) {
+            deltas[i] = intArray[i] - previous;
+            previous = intArray[i];
+        }
+
+        return ArrayOuterClass.DeltaArray.newBuilder()
+                .addAllDelta(asList(deltas))
+                .build();
+    }
+
+    /**
+     * Returns fixed-size list view of specified array.
+     */
+    @NotNull
+    private static List<Integer> asList(@NotNull int[] intArray) {
+        return new IntArrayList(intArray);
+    }
+
+    private static class IntArrayList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] array;
+
+        private IntArrayList(@NotNull int[] array) {
+            this.array = array;
+        }
+
+        @Override
+        @NotNull
+        public Integer get(int index) {
+            return array[index];
+        }
+
+        @Override
+        public int size() {
+            return array.length;
+        }
+    }
 }
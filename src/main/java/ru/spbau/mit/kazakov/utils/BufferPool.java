@@ -0,0 +1,108 @@
+package ru.spbau.mit.kazakov.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe pool of direct buffers. Buffers are grouped in size classes of powers of two,
+ * requests larger than the biggest class are served by fresh heap buffers and aren't pooled.
+ */
+public class BufferPool {
+    private static final int MIN_CLASS_SHIFT = 6;
+    private static final int MAX_CLASS_SHIFT = 24;
+    private static final int DEFAULT_BUFFERS_PER_CLASS = 64;
+
+    private final int buffersPerClass;
+    private final Deque<ByteBuffer>[] classes;
+    private final AtomicIntegerArray classSizes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BufferPool() {
+        this(DEFAULT_BUFFERS_PER_CLASS);
+    }
+
+    /**
+     * @param buffersPerClass maximum number of idle buffers kept in each size class
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int buffersPerClass) {
+        if (buffersPerClass < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.buffersPerClass = buffersPerClass;
+
+        int numberOfClasses = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+        classes = new Deque[numberOfClasses];
+        for (int i = 0; i < numberOfClasses; i++) {
+            classes[i] = new ConcurrentLinkedDeque<>();
+        }
+        classSizes = new AtomicIntegerArray(numberOfClasses);
+    }
+
+    /**
+     * Returns cleared buffer with limit set to specified size.
+     */
+    @NotNull
+    public ByteBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass == -1) {
+            misses.increment();
+            return ByteBuffer.allocate(size);
+        }
+
+        ByteBuffer buffer = classes[sizeClass].pollFirst();
+        if (buffer == null) {
+            misses.increment();
+            buffer = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_CLASS_SHIFT));
+        } else {
+            classSizes.decrementAndGet(sizeClass);
+            hits.increment();
+        }
+
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns buffer to the pool. Buffers which weren't acquired from a pool are ignored.
+     */
+    public void release(@NotNull ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (!buffer.isDirect() || sizeClass == -1 || capacity != 1 << (sizeClass + MIN_CLASS_SHIFT)) {
+            return;
+        }
+
+        if (classSizes.incrementAndGet(sizeClass) > buffersPerClass) {
+            classSizes.decrementAndGet(sizeClass);
+            return;
+        }
+        classes[sizeClass].addFirst(buffer);
+    }
+
+    /**
+     * Returns number of acquisitions served by pooled buffers.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of acquisitions which required allocating a new buffer.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static int sizeClass(int size) {
+        int shift = Math.max(MIN_CLASS_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1));
+        return shift > MAX_CLASS_SHIFT ? -1 : shift - MIN_CLASS_SHIFT;
+    }
+}
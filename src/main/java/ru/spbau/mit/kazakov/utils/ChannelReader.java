@@ -3,13 +3,28 @@ package ru.spbau.mit.kazakov.utils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.net.ProtocolException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 
 public class ChannelReader {
+    /**
+     * Largest payload accepted, equal to the biggest size class of {@link BufferPool}.
+     */
+    public static final int MAX_PACKET_SIZE = 1 << 24;
     private final static int INT_SIZE = 4;
     private final ByteBuffer size = ByteBuffer.allocate(INT_SIZE);
+    private final BufferPool pool;
     private ByteBuffer data = null;
+    private long frameStartTime;
+    private boolean endOfStream = false;
+
+    /**
+     * @param pool pool which payload buffers are acquired from
+     */
+    public ChannelReader(@NotNull BufferPool pool) {
+        this.pool = pool;
+    }
 
     /**
      * Reads part of packet.
@@ -18,20 +33,55 @@ public class ChannelReader {
      */
     public boolean read(@NotNull ByteChannel channel) throws IOException {
         if (data == null) {
-            channel.read(size);
+            if (channel.read(size) == -1) {
+                endOfStream = true;
+                return false;
+            }
             if (size.position() == INT_SIZE) {
-                data = ByteBuffer.allocate(size.getInt(0));
+                data = pool.acquire(checkPacketSize(size.getInt(0)));
+                frameStartTime = System.nanoTime();
                 size.clear();
             } else {
                 return false;
             }
         }
 
-        return channel.read(data) != 0;
+        int read = channel.read(data);
+        if (read == -1) {
+            endOfStream = true;
+        }
+        return read > 0;
+    }
+
+    /**
+     * Validates length prefix of a packet.
+     *
+     * @return specified size
+     * @throws ProtocolException if size is negative or exceeds {@link #MAX_PACKET_SIZE}
+     */
+    public static int checkPacketSize(int size) throws ProtocolException {
+        if (size < 0 || size > MAX_PACKET_SIZE) {
+            throw new ProtocolException("Invalid packet size: " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Returns true if peer closed the channel.
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * Returns value of {@link System#nanoTime} when length prefix of current packet was received.
+     */
+    public long getFrameStartTime() {
+        return frameStartTime;
     }
 
     public boolean isDone() {
-        return data != null && data.position() == data.capacity();
+        return data != null && !data.hasRemaining();
     }
 
     public void clear() {
@@ -39,8 +89,13 @@ public class ChannelReader {
         data = null;
     }
 
+    /**
+     * Returns received packet's payload ready for reading.
+     * Buffer is owned by caller from now on and should be released to the pool once decoded.
+     */
     @NotNull
-    public byte[] getData() {
-        return data.array();
+    public ByteBuffer getData() {
+        data.flip();
+        return data;
     }
 }
@@ -1,45 +1,115 @@
 package ru.spbau.mit.kazakov.utils;
 
 import org.jetbrains.annotations.NotNull;
+import ru.spbau.mit.kazakov.protocol.Handshake;
+import ru.spbau.mit.kazakov.protocol.ProcessingStage;
+import ru.spbau.mit.kazakov.protocol.ResponseHeader;
+import ru.spbau.mit.kazakov.protocol.StageTimings;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.ByteChannel;
-import java.util.LinkedList;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
 
 public class ChannelWriter {
-    private final Queue<ByteBuffer> dataQueue = new LinkedList<>();
+    private static final int MAX_GATHERED_BUFFERS = 16;
+    private final Queue<ByteBuffer> dataQueue = new ArrayDeque<>();
+    private final ByteBuffer[] gathered = new ByteBuffer[MAX_GATHERED_BUFFERS];
+    private final Map<Long, ByteBuffer[]> outOfOrderResponses = new HashMap<>();
+    private final BufferPool pool;
+    private final int version;
+    private long nextSequenceNumber = 0;
 
-    public void addData(@NotNull byte[] data) {
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        this.dataQueue.add(buffer);
+    /**
+     * Creates writer of responses of current protocol version.
+     *
+     * @param pool pool which header buffers are acquired from and written buffers are released to
+     */
+    public ChannelWriter(@NotNull BufferPool pool) {
+        this(pool, Handshake.CURRENT_VERSION);
     }
 
-    public void addData(int num) {
-        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
-        buffer.putInt(num);
-        buffer.flip();
-        this.dataQueue.add(buffer);
+    /**
+     * @param version protocol version of client's handshake which defines response header layout
+     */
+    public ChannelWriter(@NotNull BufferPool pool, int version) {
+        this.pool = pool;
+        this.version = version;
     }
 
-    public void addData(long num) {
-        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
-        buffer.putLong(num);
-        buffer.flip();
-        this.dataQueue.add(buffer);
+    /**
+     * Queues response packet. Header fields are coalesced into a single buffer. Time since the last lap
+     * of timings is counted as {@link ProcessingStage#WRITE_QUEUE_WAIT}.
+     * Responses are written in the order of their sequence numbers, which should go 0, 1, 2 and so on
+     * in the order requests were read. Response which comes before its predecessors waits for them.
+     */
+    public void addResponse(long sequenceNumber, @NotNull StageTimings timings, @NotNull ByteBuffer payload) {
+        timings.lap(ProcessingStage.WRITE_QUEUE_WAIT);
+        ByteBuffer header = pool.acquire(ResponseHeader.size(version));
+        ResponseHeader.write(header, version, timings, payload.remaining());
+        header.flip();
+        addPacket(sequenceNumber, header, payload);
     }
 
-    public void write(@NotNull ByteChannel channel) throws IOException {
+    /**
+     * Queues header telling client that its request was rejected, in the same order as responses.
+     */
+    public void addRejection(long sequenceNumber) {
+        ByteBuffer header = pool.acquire(ResponseHeader.size(version));
+        ResponseHeader.write(header, version, new StageTimings(0), ResponseHeader.REJECTED);
+        header.flip();
+        addPacket(sequenceNumber, header);
+    }
+
+    private void addPacket(long sequenceNumber, @NotNull ByteBuffer... buffers) {
+        if (sequenceNumber != nextSequenceNumber) {
+            outOfOrderResponses.put(sequenceNumber, buffers);
+            return;
+        }
+
+        dataQueue.addAll(Arrays.asList(buffers));
+        nextSequenceNumber++;
+
+        ByteBuffer[] next;
+        while ((next = outOfOrderResponses.remove(nextSequenceNumber)) != null) {
+            dataQueue.addAll(Arrays.asList(next));
+            nextSequenceNumber++;
+        }
+    }
+
+    /**
+     * Writes as much of queued data as channel accepts, several buffers per call.
+     *
+     * @return number of bytes written
+     */
+    public long write(@NotNull GatheringByteChannel channel) throws IOException {
+        long total = 0;
         while (!dataQueue.isEmpty()) {
-            ByteBuffer currentBuffer = dataQueue.peek();
-            channel.write(currentBuffer);
-            if (currentBuffer.position() != currentBuffer.capacity()) {
+            int count = 0;
+            for (ByteBuffer buffer : dataQueue) {
+                if (count == MAX_GATHERED_BUFFERS) {
+                    break;
+                }
+                gathered[count++] = buffer;
+            }
+
+            total += channel.write(gathered, 0, count);
+            Arrays.fill(gathered, 0, count, null);
+
+            int written = 0;
+            while (!dataQueue.isEmpty() && !dataQueue.peek().hasRemaining()) {
+                pool.release(dataQueue.remove());
+                written++;
+            }
+            if (written < count) {
                 break;
-            } else {
-                dataQueue.remove();
             }
         }
+        return total;
     }
 
     public boolean isDone() {
@@ -0,0 +1,49 @@
+package ru.spbau.mit.kazakov.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Parsing of option values of command-line entry points. Invalid values are reported by
+ * IllegalArgumentException with a message describing the problem.
+ */
+public class CommandLineUtils {
+    private CommandLineUtils() {
+    }
+
+    public static int toInt(@NotNull String option, @NotNull String value, int minValue) {
+        int result;
+        try {
+            result = Integer.parseInt(value);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Value of " + option + " must be an integer: " + value);
+        }
+        if (result < minValue) {
+            throw new IllegalArgumentException("Value of " + option + " must be at least " + minValue);
+        }
+        return result;
+    }
+
+    /**
+     * Returns enum constant by case-insensitive name.
+     */
+    @NotNull
+    public static <T extends Enum<T>> T toConstant(@NotNull Class<T> type, @NotNull String name) {
+        try {
+            return Enum.valueOf(type, name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException("Unknown " + type.getSimpleName() + " " + name);
+        }
+    }
+
+    /**
+     * Returns comma-separated names of constants for usage messages.
+     */
+    @NotNull
+    public static String names(@NotNull Enum<?>[] constants) {
+        return Arrays.stream(constants).map(Enum::name).collect(Collectors.joining(", "));
+    }
+}